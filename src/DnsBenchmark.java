@@ -0,0 +1,419 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ecse489.helper.IllegalArgumentFormatException;
+import ecse489.helper.Options;
+import ecse489.helper.DNS.DNSCategory;
+import ecse489.helper.DNS.LocalZone;
+import ecse489.helper.DNS.LookupHandler;
+import ecse489.helper.DNS.LookupResult;
+import ecse489.helper.DNS.Request;
+import ecse489.helper.DNS.ResponseView;
+import ecse489.helper.DNS.ReverseNames;
+import ecse489.helper.DNS.ShardedEngine;
+import ecse489.helper.DNS.StandInServer;
+
+/**
+ * Benchmarks run against a local stand-in server.
+ *
+ * java DnsBenchmark shards [max-workers] [queries]
+ * java DnsBenchmark decode [answers] [iterations]
+ * java DnsBenchmark sweep [cidr] [workers]
+ * java DnsBenchmark zone [max-entries]
+ * java DnsBenchmark race [queries]
+ */
+public class DnsBenchmark {
+    private static final int MAX_OUTSTANDING = 512;
+
+    // Results of the decoding loops end up here, so that the JIT cannot drop the loops as dead code
+    private static volatile long checksum;
+
+    public static void main(String[] args) throws IOException, IllegalArgumentFormatException {
+        String mode = args.length > 0 ? args[0] : "shards";
+        switch (mode) {
+            case "shards":
+                shards(intArg(args, 1, Runtime.getRuntime().availableProcessors()), intArg(args, 2, 200000));
+                break;
+            case "decode":
+                decode(intArg(args, 1, 60), intArg(args, 2, 200000));
+                break;
+            case "sweep":
+                sweep(args.length > 1 ? args[1] : "10.0.0.0/16",
+                        intArg(args, 2, Runtime.getRuntime().availableProcessors()));
+                break;
+            case "zone":
+                zone(intArg(args, 1, 1000000));
+                break;
+            case "race":
+                race(intArg(args, 1, 20000));
+                break;
+            default:
+                System.out.println("ERROR	Unknown benchmark: " + mode);
+        }
+    }
+
+    /**
+     * Measures queries per second of the sharded engine for 1, 2, 4... workers.
+     * @param maxWorkers Largest number of workers to measure
+     * @param queries Number of queries per run
+     */
+    private static void shards(int maxWorkers, int queries) throws IOException, IllegalArgumentFormatException {
+        StandInServer server = new StandInServer(maxWorkers);
+        server.start();
+        System.out.println("Stand-in server on 127.0.0.1:" + server.getPort() + ", " + queries + " queries per run\n");
+        System.out.println("workers	qps	timeouts");
+        try {
+            // Warm up the JIT before measuring
+            runShards(server.getPort(), maxWorkers, queries / 4, "warmup");
+            for (int workers = 1; workers <= maxWorkers; workers *= 2) {
+                long[] result = runShards(server.getPort(), workers, queries, "w" + workers);
+                System.out.println(workers + "	" + result[0] + "	" + result[1]);
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    /**
+     * @return An array holding the queries per second and the number of timeouts.
+     */
+    private static long[] runShards(int port, int workers, int queries, String tag)
+            throws IOException, IllegalArgumentFormatException {
+        Options options = new Options(2, 1, port, DNSCategory.A, "127.0.0.1", null);
+        options.setWorkers(workers);
+        ShardedEngine engine = new ShardedEngine(options);
+
+        final Semaphore outstanding = new Semaphore(MAX_OUTSTANDING);
+        final AtomicLong timeouts = new AtomicLong();
+        LookupHandler handler = new LookupHandler() {
+            @Override
+            public void onResult(LookupResult result) {
+                if (result.isTimeout()) {
+                    timeouts.incrementAndGet();
+                }
+                outstanding.release();
+            }
+        };
+
+        long startTime = System.nanoTime();
+        // Unique names so that every query goes to the server
+        for (int i = 0; i < queries; i++) {
+            outstanding.acquireUninterruptibly();
+            engine.submit("host" + i + "." + tag + ".bench", DNSCategory.A, handler);
+        }
+        outstanding.acquireUninterruptibly(MAX_OUTSTANDING);
+        long elapsed = System.nanoTime() - startTime;
+        engine.close();
+        return new long[] { (long) (queries / (elapsed / 1e9)), timeouts.get() };
+    }
+
+    /**
+     * Times a PTR sweep of a CIDR block, names generated on the fly and kept within a window of
+     * outstanding lookups as DnsClient -ptr does.
+     * @param cidr Block to sweep
+     * @param workers Number of workers
+     */
+    private static void sweep(String cidr, int workers) throws IOException, IllegalArgumentFormatException {
+        StandInServer server = new StandInServer(workers);
+        server.start();
+        Options options = new Options(2, 2, server.getPort(), DNSCategory.PTR, "127.0.0.1", cidr);
+        options.setWorkers(workers);
+        ShardedEngine engine = new ShardedEngine(options);
+
+        final Semaphore outstanding = new Semaphore(MAX_OUTSTANDING);
+        final AtomicLong timeouts = new AtomicLong();
+        LookupHandler handler = new LookupHandler() {
+            @Override
+            public void onResult(LookupResult result) {
+                if (result.isTimeout()) {
+                    timeouts.incrementAndGet();
+                }
+                outstanding.release();
+            }
+        };
+
+        ReverseNames names = new ReverseNames(cidr);
+        long total = names.remaining();
+        long startTime = System.nanoTime();
+        while (names.hasNext()) {
+            outstanding.acquireUninterruptibly();
+            engine.submit(names.next(), DNSCategory.PTR, handler);
+        }
+        outstanding.acquireUninterruptibly(MAX_OUTSTANDING);
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        engine.close();
+        server.close();
+
+        System.out.println("Swept " + cidr + ": " + total + " PTR lookups in " + seconds + " seconds ("
+                + (long) (total / seconds) + " per second, " + timeouts.get() + " timeouts, "
+                + workers + " workers)");
+    }
+
+    /**
+     * Measures lookups against a dual-stack upstream on 127.0.0.1 and ::1, with both families answering
+     * and with either one silently dropping every query, next to single family upstreams.
+     * @param queries Number of queries per run
+     */
+    private static void race(int queries) throws IOException, IllegalArgumentFormatException {
+        InetAddress ipv4 = InetAddress.getByName("127.0.0.1");
+        InetAddress ipv6 = InetAddress.getByName("::1");
+        StandInServer server4 = new StandInServer(1, ipv4, 0);
+        int port = server4.getPort();
+        System.out.println("Stand-in servers on 127.0.0.1 and ::1 port " + port + ", " + queries + " queries per run\n");
+        System.out.println("upstream	qps	timeouts	mean ms");
+        try {
+            server4.start();
+            runRace("127.0.0.1", port, queries / 4, "warmup");
+            System.out.println(runRace("127.0.0.1", port, queries, "v4"));
+
+            StandInServer server6 = new StandInServer(1, ipv6, port);
+            server6.start();
+            System.out.println(runRace("::1", port, queries, "v6"));
+            System.out.println(runRace("127.0.0.1,::1", port, queries, "both"));
+            server6.close();
+
+            // A bound socket that never reads drops everything without an ICMP error, like a broken path
+            DatagramChannel blackhole = DatagramChannel.open();
+            blackhole.bind(new InetSocketAddress(ipv6, port));
+            System.out.println(runRace("127.0.0.1,::1", port, queries, "v6 dropped"));
+            blackhole.close();
+
+            server4.close();
+            server6 = new StandInServer(1, ipv6, port);
+            server6.start();
+            blackhole = DatagramChannel.open();
+            blackhole.bind(new InetSocketAddress(ipv4, port));
+            System.out.println(runRace("127.0.0.1,::1", port, queries, "v4 dropped"));
+            blackhole.close();
+            server6.close();
+        } finally {
+            server4.close();
+        }
+    }
+
+    /**
+     * @return A line holding the upstream, queries per second, timeouts and mean latency.
+     */
+    private static String runRace(String upstream, int port, int queries, String tag)
+            throws IOException, IllegalArgumentFormatException {
+        Options options = new Options(2, 1, port, DNSCategory.AAAA, upstream, null);
+        options.setWorkers(1);
+        ShardedEngine engine = new ShardedEngine(options);
+
+        final Semaphore outstanding = new Semaphore(MAX_OUTSTANDING);
+        final AtomicLong timeouts = new AtomicLong();
+        final AtomicLong latency = new AtomicLong();
+        LookupHandler handler = new LookupHandler() {
+            @Override
+            public void onResult(LookupResult result) {
+                if (result.isTimeout()) {
+                    timeouts.incrementAndGet();
+                }
+                latency.addAndGet(result.getElapsedNanos());
+                outstanding.release();
+            }
+        };
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            outstanding.acquireUninterruptibly();
+            engine.submit("host" + i + "." + tag.replace(' ', '-') + ".bench", DNSCategory.AAAA, handler);
+        }
+        outstanding.acquireUninterruptibly(MAX_OUTSTANDING);
+        long elapsed = System.nanoTime() - startTime;
+        engine.close();
+        return tag + "	" + (long) (queries / (elapsed / 1e9)) + "	" + timeouts.get() + "	"
+                + (latency.get() / queries / 1000) / 1000.0;
+    }
+
+    /**
+     * Measures the local zone for 1000, 10000... entries: loading a hosts file, then answering names it
+     * holds, names covered by a wildcard and names it does not hold.
+     * @param maxEntries Largest number of entries to measure
+     */
+    private static void zone(int maxEntries) throws IOException, IllegalArgumentFormatException {
+        System.out.println("entries	load ms	hit ns	wildcard ns	miss ns");
+        for (int entries = 1000; entries <= maxEntries; entries *= 10) {
+            File file = File.createTempFile("zone", ".hosts");
+            try {
+                BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+                for (int i = 0; i < entries; i++) {
+                    writer.write("10." + ((i >> 16) & 0xFF) + "." + ((i >> 8) & 0xFF) + "." + (i & 0xFF)
+                            + " host" + i + ".d" + (i % 997) + ".zone.bench\n");
+                }
+                writer.write("*.wild.zone.bench A 10.255.255.255\n");
+                writer.close();
+
+                long startTime = System.nanoTime();
+                LocalZone zone = new LocalZone(file.getPath());
+                long load = (System.nanoTime() - startTime) / 1000000;
+
+                String[] hits = new String[1024];
+                String[] wildcards = new String[1024];
+                String[] misses = new String[1024];
+                for (int i = 0; i < hits.length; i++) {
+                    int n = (int) ((i * 2654435761L) % entries);
+                    hits[i] = "host" + n + ".d" + (n % 997) + ".zone.bench";
+                    wildcards[i] = "host" + n + ".wild.zone.bench";
+                    misses[i] = "host" + n + ".d" + (n % 997) + ".elsewhere.bench";
+                }
+                System.out.println(entries + "	" + load + "	" + answerNanos(zone, hits) + "	"
+                        + answerNanos(zone, wildcards) + "	" + answerNanos(zone, misses));
+            } finally {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * @return Average nanoseconds taken to answer a name, after a warm up round.
+     */
+    private static long answerNanos(LocalZone zone, String[] names) {
+        int iterations = 500;
+        long sink = 0;
+        long elapsed = 0;
+        for (int round = 0; round < 2; round++) {
+            long startTime = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                for (String name : names) {
+                    byte[] response = zone.answer(0, name, DNSCategory.A);
+                    sink += response == null ? 0 : response.length;
+                }
+            }
+            elapsed = System.nanoTime() - startTime;
+        }
+        checksum = sink;
+        return elapsed / ((long) iterations * names.length);
+    }
+
+    /**
+     * Compares the printing parser of Request with ResponseView, reading only the first answer and
+     * decoding every record, on a response holding many A records.
+     * @param answers Number of A records in the answer section
+     * @param iterations Number of decodes per measurement
+     */
+    private static void decode(int answers, int iterations) {
+        byte[] response = buildLargeResponse(answers);
+        System.out.println("Response of " + response.length + " bytes: " + answers
+                + " answers, 4 authority, 4 additional\n");
+        System.out.println("decoder	ns/response");
+
+        Request request = new Request(new Options(5, 3, 53, DNSCategory.A, "127.0.0.1", "www.example.com"));
+        PrintStream console = System.out;
+        PrintStream discard = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+        ResponseView view = new ResponseView();
+        long sink = 0;
+
+        for (int round = 0; round < 2; round++) {
+            // The first round warms up the JIT
+            System.setOut(discard);
+            long startTime = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                request.parseAndPrintResponse(response);
+            }
+            long parser = (System.nanoTime() - startTime) / iterations;
+            System.setOut(console);
+
+            startTime = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                view.wrap(response);
+                if (view.getCount(ResponseView.ANSWER) > 0) {
+                    sink += view.getIPv4Address(0);
+                }
+            }
+            long first = (System.nanoTime() - startTime) / iterations;
+
+            startTime = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                view.wrap(response);
+                for (int r = 0; view.has(r); r++) {
+                    sink += view.getName(r).length() + view.getTtl(r);
+                    switch (view.getType(r)) {
+                        case ResponseView.TYPE_A:
+                            sink += view.getIPv4(r).length();
+                            break;
+                        case ResponseView.TYPE_NS:
+                            sink += view.getTarget(r).length();
+                            break;
+                    }
+                }
+            }
+            long full = (System.nanoTime() - startTime) / iterations;
+
+            if (round == 1) {
+                System.out.println("Request.parseAndPrintResponse	" + parser);
+                System.out.println("ResponseView first answer	" + first);
+                System.out.println("ResponseView full decode	" + full);
+            }
+        }
+        checksum = sink;
+    }
+
+    /**
+     * Builds a response to www.example.com A with the given number of answers, 4 name servers for
+     * example.com and their addresses as glue. Uses the transaction ID expected by Request.
+     */
+    private static byte[] buildLargeResponse(int answers) {
+        byte[] buffer = new byte[12 + 21 + answers * 16 + 4 * 18 + 4 * 16];
+        int pointer = 0;
+        // ID 0xEECE, QR RD RA, QDCOUNT 1, ANCOUNT, NSCOUNT 4, ARCOUNT 4
+        int[] header = { 0xEE, 0xCE, 0x81, 0x80, 0, 1, answers >> 8, answers & 0xFF, 0, 4, 0, 4 };
+        for (int b : header) {
+            buffer[pointer++] = (byte) b;
+        }
+        // Question: www.example.com A IN, example.com starts at offset 16
+        for (String label : new String[] { "www", "example", "com" }) {
+            buffer[pointer++] = (byte) label.length();
+            for (char c : label.toCharArray()) {
+                buffer[pointer++] = (byte) c;
+            }
+        }
+        buffer[pointer++] = 0;
+        pointer = put(buffer, pointer, 0, 1, 0, 1);
+
+        for (int i = 0; i < answers; i++) {
+            pointer = put(buffer, pointer, 0xC0, 0x0C, 0, 1, 0, 1, 0, 0, 0x01, 0x2C, 0, 4,
+                    93, 184, i >> 8, i & 0xFF);
+        }
+        int[] nsOffsets = new int[4];
+        for (int i = 0; i < 4; i++) {
+            // ns<i>.example.com
+            pointer = put(buffer, pointer, 0xC0, 0x10, 0, 2, 0, 1, 0, 0, 0x0E, 0x10, 0, 6);
+            nsOffsets[i] = pointer;
+            pointer = put(buffer, pointer, 3, 'n', 's', '0' + i, 0xC0, 0x10);
+        }
+        for (int i = 0; i < 4; i++) {
+            pointer = put(buffer, pointer, 0xC0 | (nsOffsets[i] >> 8), nsOffsets[i] & 0xFF, 0, 1, 0, 1,
+                    0, 0, 0x0E, 0x10, 0, 4, 192, 0, 2, i);
+        }
+        return buffer;
+    }
+
+    private static int put(byte[] buffer, int pointer, int... bytes) {
+        for (int b : bytes) {
+            buffer[pointer++] = (byte) b;
+        }
+        return pointer;
+    }
+
+    private static int intArg(String[] args, int index, int defaultValue) {
+        return args.length > index ? Integer.parseInt(args[index]) : defaultValue;
+    }
+}
@@ -2,6 +2,9 @@ import java.io.IOException;
 
 import ecse489.helper.Options;
 import ecse489.helper.Parser;
+import ecse489.helper.DNS.BulkLookup;
+import ecse489.helper.DNS.MxAddressLookup;
+import ecse489.helper.DNS.OutputFormat;
 import ecse489.helper.DNS.Request;
 
 public class DnsClient {
@@ -10,6 +13,18 @@ public class DnsClient {
         Options options = parser.buildOptions();
         if (options != null) {
         	try {
+        		if (options.isMxAddresses()) {
+        			// Resolve mail exchanges together with their addresses
+        			new MxAddressLookup(options).run();
+        			return;
+        		}
+        		if (options.isBulk() || options.isSweep() || options.getOutputFormat() != OutputFormat.HUMAN) {
+        			// Resolve every name listed in the file, every address of a block, or a single name in a
+        			// machine readable format
+        			new BulkLookup(options).run();
+        			return;
+        		}
+
             	Request areq = new Request(options);
 
             	// Obtain response from the request
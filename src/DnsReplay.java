@@ -0,0 +1,273 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import ecse489.helper.DNS.CaptureReader;
+import ecse489.helper.DNS.ReplayServer;
+import ecse489.helper.DNS.ResponseView;
+
+/**
+ * Replays a capture file written with DnsClient -c.
+ *
+ * java DnsReplay decode <capture> [iterations]
+ *     Decodes every captured response as fast as possible and reports the decode throughput.
+ * java DnsReplay timed <capture> [speed]
+ *     Serves the captured responses from a local replay server, each after its recorded delay, and
+ *     sends the captured queries at their original pace divided by speed.
+ *
+ * Both report the responses that failed to decode.
+ */
+public class DnsReplay {
+    private static final long GRACE_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int BUFFER_SIZE = 1 << 22;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("ERROR	Usage: java DnsReplay decode|timed <capture> [iterations|speed]");
+            return;
+        }
+        switch (args[0]) {
+            case "decode":
+                decode(load(args[1]), args.length > 2 ? Integer.parseInt(args[2]) : 20);
+                break;
+            case "timed":
+                timed(load(args[1]), args.length > 2 ? Double.parseDouble(args[2]) : 1.0);
+                break;
+            default:
+                System.out.println("ERROR	Unknown replay mode: " + args[0]);
+        }
+    }
+
+    /**
+     * A captured pair.
+     */
+    private static class Pair {
+        private long timestamp;
+        private long delay;
+        private byte[] query;
+        private byte[] response;
+    }
+
+    /**
+     * Reads a whole capture into memory so that disk reads stay out of the measurements. Pairs are
+     * written as lookups complete, so they are put back in the order the queries were sent.
+     */
+    private static List<Pair> load(String path) throws IOException {
+        List<Pair> pairs = new ArrayList<Pair>();
+        CaptureReader reader = new CaptureReader(path);
+        try {
+            while (reader.next()) {
+                Pair pair = new Pair();
+                pair.timestamp = reader.getTimestamp();
+                pair.delay = reader.getDelay();
+                pair.query = reader.getQuery();
+                pair.response = reader.getResponse();
+                pairs.add(pair);
+            }
+            if (reader.isTruncated()) {
+                System.out.println("WARNING	Capture ends in the middle of a pair; the partial pair is ignored");
+            }
+        } finally {
+            reader.close();
+        }
+        // Stable, so pairs sent in the same microsecond keep their order
+        Collections.sort(pairs, new Comparator<Pair>() {
+            @Override
+            public int compare(Pair a, Pair b) {
+                return Long.compare(a.timestamp, b.timestamp);
+            }
+        });
+        return pairs;
+    }
+
+    /**
+     * Decodes every response: header, then the owner name, TTL and data of every record.
+     * @param pairs Captured pairs
+     * @param iterations Number of passes over the capture
+     */
+    private static void decode(List<Pair> pairs, int iterations) {
+        List<byte[]> responses = new ArrayList<byte[]>(pairs.size());
+        long bytes = 0;
+        for (Pair pair : pairs) {
+            if (pair.response != null) {
+                responses.add(pair.response);
+                bytes += pair.response.length;
+            }
+        }
+        System.out.println(pairs.size() + " pairs, " + responses.size() + " responses (" + bytes + " bytes), "
+                + (pairs.size() - responses.size()) + " unanswered queries\n");
+        if (responses.isEmpty()) {
+            return;
+        }
+
+        ResponseView view = new ResponseView();
+        StringBuilder data = new StringBuilder(256);
+        long failures = 0;
+        long records = 0;
+        long elapsed = 0;
+        for (int round = 0; round < 2; round++) {
+            // The first round warms up the JIT and counts the failures
+            int passes = round == 0 ? 1 : iterations;
+            long startTime = System.nanoTime();
+            for (int pass = 0; pass < passes; pass++) {
+                for (byte[] response : responses) {
+                    boolean decoded = decodeAll(view, response, data);
+                    if (round == 0) {
+                        failures += decoded ? 0 : 1;
+                        records += decoded ? view.getRecordCount() : 0;
+                    }
+                }
+            }
+            elapsed = System.nanoTime() - startTime;
+        }
+
+        double seconds = elapsed / 1e9;
+        long decodes = (long) responses.size() * iterations;
+        System.out.println("Decoded " + decodes + " responses in " + seconds + " seconds: "
+                + (long) (decodes / seconds) + " responses per second, "
+                + (long) (bytes * iterations / seconds / (1 << 20)) + " MB per second, "
+                + (elapsed / decodes) + " ns per response");
+        System.out.println(records + " records per pass, " + failures + " responses failed to decode");
+    }
+
+    /**
+     * @return False if the response is shorter than a header, malformed or truncated before its last
+     * record, or holds a name that cannot be decoded.
+     */
+    private static boolean decodeAll(ResponseView view, byte[] response, StringBuilder data) {
+        try {
+            view.wrap(response);
+            int numOfRecords = view.getRecordCount();
+            for (int i = 0; i < numOfRecords; i++) {
+                if (!view.has(i)) {
+                    return false;
+                }
+                data.setLength(0);
+                view.appendName(view.getNameOffset(i), data);
+                data.append(view.getTtl(i));
+                view.appendData(i, data);
+            }
+            return !view.isMalformed();
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Sends the captured queries to a replay server at their original pace and decodes what comes back.
+     * @param pairs Captured pairs
+     * @param speed Factor by which the gaps between queries are shortened
+     */
+    private static void timed(List<Pair> pairs, double speed) throws IOException {
+        if (pairs.isEmpty()) {
+            System.out.println("Capture holds no pairs");
+            return;
+        }
+        ReplayServer server = new ReplayServer();
+        long expected = 0;
+        long maxDelay = 0;
+        for (Pair pair : pairs) {
+            server.add(pair.query, pair.response, pair.delay);
+            if (pair.response != null) {
+                expected++;
+                maxDelay = Math.max(maxDelay, pair.delay);
+            }
+        }
+        server.start();
+
+        final DatagramChannel channel = DatagramChannel.open();
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, BUFFER_SIZE);
+        channel.connect(new InetSocketAddress("127.0.0.1", server.getPort()));
+
+        // Send time and recorded delay of the query currently holding each transaction ID, read by the
+        // receiver thread
+        final AtomicLongArray sentAt = new AtomicLongArray(65536);
+        final AtomicLongArray delays = new AtomicLongArray(65536);
+        final AtomicLong received = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong lateness = new AtomicLong();
+        Thread receiver = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                ByteBuffer incoming = ByteBuffer.allocate(4096);
+                ResponseView view = new ResponseView();
+                StringBuilder data = new StringBuilder(256);
+                try {
+                    while (true) {
+                        incoming.clear();
+                        channel.receive(incoming);
+                        long now = System.nanoTime();
+                        byte[] response = Arrays.copyOf(incoming.array(), incoming.position());
+                        if (!decodeAll(view, response, data)) {
+                            failures.incrementAndGet();
+                        }
+                        if (response.length >= 2) {
+                            int id = ((response[0] & 0xFF) << 8) | (response[1] & 0xFF);
+                            lateness.addAndGet(now - sentAt.get(id) - TimeUnit.MICROSECONDS.toNanos(delays.get(id)));
+                        }
+                        received.incrementAndGet();
+                    }
+                } catch (ClosedChannelException e) {
+                    // Replay finished
+                } catch (IOException e) {
+                    System.out.println("ERROR	Replay receiver stopped: " + e.getLocalizedMessage());
+                }
+            }
+        }, "dns-replay-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+
+        System.out.println("Replaying " + pairs.size() + " queries to 127.0.0.1:" + server.getPort()
+                + " at " + speed + "x\n");
+        long base = pairs.get(0).timestamp;
+        long startTime = System.nanoTime();
+        for (int i = 0; i < pairs.size(); i++) {
+            Pair pair = pairs.get(i);
+            long due = startTime + (long) (TimeUnit.MICROSECONDS.toNanos(pair.timestamp - base) / speed);
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            // A fresh transaction ID for every query, so that responses can be told apart
+            int id = i & 0xFFFF;
+            byte[] query = Arrays.copyOf(pair.query, pair.query.length);
+            query[0] = (byte) (id >> 8);
+            query[1] = (byte) id;
+            // Delay first: the send time is the one written last, so a receiver seeing it sees both
+            delays.set(id, Math.max(pair.delay, 0));
+            sentAt.set(id, System.nanoTime());
+            channel.write(ByteBuffer.wrap(query));
+        }
+        double sendSeconds = (System.nanoTime() - startTime) / 1e9;
+
+        // Wait for the slowest recorded response
+        long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(maxDelay) + GRACE_NANOS;
+        while (received.get() < expected && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        channel.close();
+        server.close();
+
+        long numOfReceived = received.get();
+        System.out.println("Sent " + pairs.size() + " queries in " + sendSeconds + " seconds (recorded over "
+                + (pairs.get(pairs.size() - 1).timestamp - base) / 1e6 + " seconds)");
+        System.out.println(numOfReceived + " of " + expected + " recorded responses received, "
+                + Math.max(expected - numOfReceived, 0) + " missing, " + failures.get() + " failed to decode");
+        if (numOfReceived > 0) {
+            System.out.println("Responses arrived on average " + (lateness.get() / numOfReceived / 1000)
+                    + " microseconds later than recorded");
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package ecse489.helper.DNS;
+
+import java.nio.channels.Selector;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when a {@link Shard} may put another query on the wire towards its upstream. Combines a token
+ * bucket enforcing the shard's share of a hard ceiling on queries per second with the
+ * {@link CongestionWindow} every shard of the upstream shares, so a bulk run settles at the highest rate
+ * the upstream sustains. Confined to the shard's thread; only the window is shared.
+ */
+class AdmissionControl {
+	// Tokens the bucket may hold, in seconds of the ceiling rate
+	private static final double BURST_SECONDS = 0.05;
+
+	private final CongestionWindow window;
+	private final double tokensPerNano;
+	private final double burst;
+	private double tokens;
+	private long lastRefill;
+
+	/**
+	 * Package constructor.
+	 * @param window - The window shared by every shard querying the same upstream.
+	 * @param rate - Ceiling in queries per second, 0 for no ceiling.
+	 * @param now - Current time in nanoseconds.
+	 */
+	protected AdmissionControl(CongestionWindow window, double rate, long now) {
+		this.window = window;
+		this.tokensPerNano = rate / TimeUnit.SECONDS.toNanos(1);
+		this.burst = Math.max(1, rate * BURST_SECONDS);
+		this.tokens = burst;
+		this.lastRefill = now;
+	}
+
+	/**
+	 * Takes a place in the window and a token if both allow another query. The place must be given back
+	 * with {@link #release()} once the query leaves the wire.
+	 * @param now - Current time in nanoseconds.
+	 * @return True if the query may be sent.
+	 */
+	protected boolean admit(long now) {
+		if (tokensPerNano != 0) {
+			refill(now);
+			if (tokens < 1) {
+				return false;
+			}
+		}
+		if (!window.acquire()) {
+			return false;
+		}
+		if (tokensPerNano != 0) {
+			tokens--;
+		}
+		return true;
+	}
+
+	/**
+	 * Gives back the place of a query that was answered, timed out or is about to be retried.
+	 */
+	protected void release() {
+		window.release();
+	}
+
+	/**
+	 * @param now - Current time in nanoseconds.
+	 * @param selector - Woken up when another shard makes room in the window.
+	 * @return Nanoseconds until {@link #admit(long)} may succeed, or -1 if it must wait for a query in
+	 * flight to complete.
+	 */
+	protected long nanosUntilAdmit(long now, Selector selector) {
+		if (window.isFull() && window.await(selector)) {
+			return -1;
+		}
+		if (tokensPerNano == 0) {
+			return 0;
+		}
+		refill(now);
+		return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+	}
+
+	protected void onAnswer() {
+		window.onAnswer();
+	}
+
+	protected void onCongestion(long sentAt, long now) {
+		window.onCongestion(sentAt, now);
+	}
+
+	private void refill(long now) {
+		tokens = Math.min(burst, tokens + (now - lastRefill) * tokensPerNano);
+		lastRefill = now;
+	}
+}
@@ -0,0 +1,130 @@
+package ecse489.helper.DNS;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands results to a sink running on its own thread, so formatting and writing never stall the threads
+ * resolving names. Thread safe. Results are written in batches and the sink is only flushed once the
+ * queue runs dry.
+ */
+public class AsyncSink implements ResultSink {
+	private static final int CAPACITY = 65536;
+	private static final int BATCH = 4096;
+	// Marks the end of the queue
+	private static final LookupResult END = new LookupResult(null, null, null, 0, 0, false);
+
+	private final ResultSink sink;
+	private final BlockingQueue<LookupResult> queue = new ArrayBlockingQueue<LookupResult>(CAPACITY);
+	private final Thread thread;
+	private volatile IOException failure;
+
+	/**
+	 * Public constructor. Starts the writer thread.
+	 * @param sink The single threaded sink to write to
+	 */
+	public AsyncSink(ResultSink sink) {
+		this.sink = sink;
+		this.thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		}, "dns-output");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Queues a result, blocking while the writer is behind.
+	 * @throws IOException If the writer thread failed.
+	 */
+	@Override
+	public void write(LookupResult result) throws IOException {
+		try {
+			while (!queue.offer(result, 100, TimeUnit.MILLISECONDS)) {
+				checkFailure();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		checkFailure();
+	}
+
+	/**
+	 * Does nothing; the writer thread flushes whenever it catches up.
+	 */
+	@Override
+	public void flush() throws IOException {
+		checkFailure();
+	}
+
+	/**
+	 * Writes every queued result, then closes the sink.
+	 * @throws IOException If the writer thread failed.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			while (thread.isAlive() && !queue.offer(END, 100, TimeUnit.MILLISECONDS)) {
+				// Writer is behind
+			}
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		sink.close();
+		checkFailure();
+	}
+
+	private void checkFailure() throws IOException {
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Body of the writer thread.
+	 */
+	private void drain() {
+		List<LookupResult> batch = new ArrayList<LookupResult>(BATCH);
+		try {
+			while (true) {
+				batch.add(queue.take());
+				queue.drainTo(batch, BATCH - 1);
+				for (LookupResult result : batch) {
+					if (result == END) {
+						sink.flush();
+						return;
+					}
+					sink.write(result);
+				}
+				batch.clear();
+				if (queue.isEmpty()) {
+					sink.flush();
+				}
+			}
+		} catch (IOException e) {
+			fail(e);
+		} catch (RuntimeException | Error e) {
+			// The sink tripped over a result; stop the run rather than drop every later result
+			fail(new IOException("Could not write results: " + e, e));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			fail(new IOException("Writer thread interrupted.", e));
+		}
+	}
+
+	/**
+	 * Records why the writer thread stopped, so that write() and close() report it.
+	 */
+	private void fail(IOException e) {
+		failure = e;
+		// Unblock producers waiting on a full queue
+		queue.clear();
+	}
+}
@@ -0,0 +1,65 @@
+package ecse489.helper.DNS;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A compact binary format keeping the raw response, to be decoded later with a {@link ResponseView}.
+ * The stream starts with the 4 bytes "DNSR" and a version byte (1), followed by one record per lookup,
+ * all integers big endian:
+ *
+ * u16 length of the rest of the record
+ * u8  request type (0 A, 1 MX, 2 NS, 3 PTR, 4 AAAA, in the order of {@link DNSCategory})
+ * u8  flags (0x01 timed out, 0x02 cached, 0x04 failed without a response)
+ * u8  retries
+ * u32 round trip time in microseconds
+ * u8  length of the name, then the name in ISO-8859-1
+ * u16 length of the response, then the response as received (empty on timeout or failure)
+ */
+class BinarySink implements ResultSink {
+	private static final int BUFFER_SIZE = 1 << 20;
+	private static final byte[] MAGIC = { 'D', 'N', 'S', 'R', 1 };
+
+	private final DataOutputStream out;
+	private boolean headerWritten = false;
+
+	protected BinarySink(OutputStream out) {
+		this.out = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+	}
+
+	@Override
+	public void write(LookupResult result) throws IOException {
+		if (!headerWritten) {
+			headerWritten = true;
+			out.write(MAGIC);
+		}
+		String name = result.getName();
+		int nameLength = Math.min(name.length(), 0xFF);
+		byte[] response = result.getResponse() == null ? new byte[0] : result.getResponse();
+
+		out.writeShort(1 + 1 + 1 + 4 + 1 + nameLength + 2 + response.length);
+		out.writeByte(result.getDNS().ordinal());
+		out.writeByte((result.isTimeout() ? 0x01 : 0x00) | (result.isCached() ? 0x02 : 0x00)
+				| (result.isFailed() ? 0x04 : 0x00));
+		out.writeByte(Math.min(result.getTries(), 0xFF));
+		out.writeInt((int) Math.min(result.getElapsedNanos() / 1000, 0xFFFFFFFFL));
+		out.writeByte(nameLength);
+		for (int i = 0; i < nameLength; i++) {
+			out.writeByte(name.charAt(i));
+		}
+		out.writeShort(response.length);
+		out.write(response);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
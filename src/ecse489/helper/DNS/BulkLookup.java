@@ -0,0 +1,167 @@
+package ecse489.helper.DNS;
+
+import ecse489.helper.IllegalArgumentFormatException;
+import ecse489.helper.Options;
+
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Resolves every name listed in a file, or the reverse name of every address of a CIDR block, through a
+ * {@link ShardedEngine}, writing results through an {@link AsyncSink} in the requested
+ * {@link OutputFormat}. Also used for single lookups asking for a machine readable format.
+ */
+public class BulkLookup {
+	// Bounds memory use when the file holds millions of names
+	protected static final int MAX_OUTSTANDING = 4096;
+
+	private Options options;
+
+	public BulkLookup(Options options) {
+		this.options = options;
+	}
+
+	/**
+	 * Reads the file one name per line, resolves every name and writes one entry per result.
+	 * @throws IOException
+	 */
+	public void run() throws IOException {
+		// Keep standard output clean for machine readable formats
+		PrintStream info = options.getOutputFormat() == OutputFormat.HUMAN ? System.out : System.err;
+		if (options.isSweep()) {
+			info.println("\nDnsClient sending reverse requests for every address of " + options.getName());
+		} else {
+			info.println("\nDnsClient sending " + (options.isBulk() ? "bulk requests from " : "request for ")
+					+ options.getName());
+		}
+		info.println("Server: " + options.getServer());
+		info.println("Request type: " + options.getDNS() + " (" + options.getWorkers() + " workers)\n");
+
+		ShardedEngine engine;
+		try {
+			if (options.isSweep()) {
+				// Reject a malformed block before starting any thread
+				new ReverseNames(options.getName());
+			}
+			engine = new ShardedEngine(options);
+		} catch (IllegalArgumentFormatException e) {
+			info.println("Error	Incorrect input syntax: " + e.getLocalizedMessage());
+			return;
+		}
+
+		final AsyncSink sink = new AsyncSink(options.getOutputFormat().open(standardOutput()));
+		final Semaphore outstanding = new Semaphore(MAX_OUTSTANDING);
+		final AtomicLong answered = new AtomicLong();
+		final AtomicLong timedOut = new AtomicLong();
+		final AtomicLong failed = new AtomicLong();
+		LookupHandler handler = new LookupHandler() {
+			@Override
+			public void onResult(LookupResult result) {
+				if (result.isTimeout()) {
+					timedOut.incrementAndGet();
+				} else if (result.isFailed()) {
+					failed.incrementAndGet();
+				} else {
+					answered.incrementAndGet();
+				}
+				try {
+					sink.write(result);
+				} catch (IOException e) {
+					// Reported when the sink is closed
+				}
+				outstanding.release();
+			}
+		};
+
+		long startTime = System.nanoTime();
+		try {
+			final ShardedEngine shardedEngine = engine;
+			forEachName(options, outstanding, new Consumer<String>() {
+				@Override
+				public void accept(String name) {
+					shardedEngine.submit(name, options.getDNS(), handler);
+				}
+			});
+			// Wait for every lookup to complete
+			outstanding.acquireUninterruptibly(MAX_OUTSTANDING);
+		} catch (IllegalArgumentFormatException e) {
+			info.println("Error	Incorrect input syntax: " + e.getLocalizedMessage());
+		} finally {
+			engine.close();
+			sink.close();
+		}
+
+		double seconds = (System.nanoTime() - startTime) / 1e9;
+		long total = answered.get() + timedOut.get() + failed.get();
+		info.println("\n" + total + " lookups in " + seconds + " seconds (" + (long) (total / seconds)
+				+ " per second): " + answered.get() + " answered, " + timedOut.get() + " timed out, "
+				+ failed.get() + " failed");
+	}
+
+	/**
+	 * @return Standard output for a sink. Closing the sink must leave standard output open, as the summary
+	 * is written there afterwards.
+	 */
+	protected static OutputStream standardOutput() {
+		return new FilterOutputStream(new FileOutputStream(FileDescriptor.out)) {
+			@Override
+			public void write(byte[] bytes, int offset, int length) throws IOException {
+				out.write(bytes, offset, length);
+			}
+
+			@Override
+			public void close() throws IOException {
+				flush();
+			}
+		};
+	}
+
+	/**
+	 * Feeds every name to look up to a consumer: each line of the file in bulk mode, every reverse name of
+	 * the block in a sweep, the name itself otherwise. Blank lines and lines starting with # are skipped,
+	 * and IP addresses are turned into reverse names for PTR lookups.
+	 * @param options Options holding the name, file or block
+	 * @param outstanding A permit is taken before every name and released by the caller once done with it
+	 * @param submit Receives every name
+	 * @throws IOException
+	 * @throws IllegalArgumentFormatException If the block of a sweep is malformed
+	 */
+	protected static void forEachName(Options options, Semaphore outstanding, Consumer<String> submit)
+			throws IOException, IllegalArgumentFormatException {
+		boolean reverse = options.getDNS() == DNSCategory.PTR;
+		if (options.isSweep()) {
+			// The permits bound how far generation runs ahead of the lookups in flight
+			ReverseNames names = new ReverseNames(options.getName());
+			while (names.hasNext()) {
+				outstanding.acquireUninterruptibly();
+				submit.accept(names.next());
+			}
+			return;
+		}
+		if (!options.isBulk()) {
+			outstanding.acquireUninterruptibly();
+			submit.accept(reverse ? ReverseNames.toReverseName(options.getName()) : options.getName());
+			return;
+		}
+		try (BufferedReader reader = new BufferedReader(new FileReader(options.getName()))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty() || line.charAt(0) == '#') {
+					continue;
+				}
+				outstanding.acquireUninterruptibly();
+				submit.accept(reverse ? ReverseNames.toReverseName(line) : line);
+			}
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package ecse489.helper.DNS;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Reads the query and response pairs of a capture file written with DnsClient -c, one pair at a time.
+ * See {@link CaptureWriter} for the format.
+ */
+public class CaptureReader {
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private DataInputStream in;
+	private boolean truncated = false;
+
+	private long timestamp;
+	private long delay;
+	private byte[] query;
+	private byte[] response;
+
+	/**
+	 * Public constructor.
+	 * @param path Path of the capture file
+	 * @throws IOException If the file cannot be read or is not a capture file.
+	 */
+	public CaptureReader(String path) throws IOException {
+		this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(path), BUFFER_SIZE));
+		byte[] magic = new byte[CaptureWriter.MAGIC.length];
+		try {
+			in.readFully(magic);
+		} catch (EOFException e) {
+			in.close();
+			throw new IOException("Not a capture file: " + path);
+		}
+		for (int i = 0; i < magic.length; i++) {
+			if (magic[i] != CaptureWriter.MAGIC[i]) {
+				in.close();
+				throw new IOException("Not a capture file: " + path);
+			}
+		}
+	}
+
+	/**
+	 * Reads the next pair.
+	 * @return False at the end of the file, or at a pair cut short by an interrupted capture.
+	 * @throws IOException
+	 */
+	public boolean next() throws IOException {
+		try {
+			timestamp = in.readLong();
+		} catch (EOFException e) {
+			return false;
+		}
+		try {
+			delay = in.readInt() & 0xFFFFFFFFL;
+			query = new byte[in.readUnsignedShort()];
+			in.readFully(query);
+			int length = in.readUnsignedShort();
+			response = delay == CaptureWriter.NO_RESPONSE ? null : new byte[length];
+			if (response != null) {
+				in.readFully(response);
+			}
+		} catch (EOFException e) {
+			truncated = true;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return True if the file ended in the middle of a pair.
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * @return Time the query was sent, in microseconds since the epoch.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return Delay until the response in microseconds, or -1 if no response was received.
+	 */
+	public long getDelay() {
+		return delay == CaptureWriter.NO_RESPONSE ? -1 : delay;
+	}
+
+	public byte[] getQuery() {
+		return query;
+	}
+
+	/**
+	 * @return The response, or null if none was received.
+	 */
+	public byte[] getResponse() {
+		return response;
+	}
+
+	public void close() throws IOException {
+		in.close();
+	}
+}
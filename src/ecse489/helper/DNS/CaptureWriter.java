@@ -0,0 +1,136 @@
+package ecse489.helper.DNS;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends every query sent and the response it received to a capture file, for offline replay with
+ * {@link CaptureReader}. A new file starts with the 4 bytes "DNSC" and a version byte (1); every pair is
+ * then appended as, all integers big endian:
+ *
+ * u64 time the query was sent, in microseconds since the epoch
+ * u32 delay until the response, in microseconds, 0xFFFFFFFF if none was received
+ * u16 length of the query, then the query as sent
+ * u16 length of the response, then the response as received (empty if none)
+ *
+ * A pair cut short by an interrupted run is removed before appending, so that it stays a readable file.
+ * Thread safe.
+ */
+class CaptureWriter {
+	protected static final byte[] MAGIC = { 'D', 'N', 'S', 'C', 1 };
+	protected static final long NO_RESPONSE = 0xFFFFFFFFL;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final DataOutputStream out;
+	// Converts System.nanoTime() readings into wall clock time
+	private final long epochMicros;
+	private final long baseNanos;
+
+	/**
+	 * Package constructor. Appends to the file if it already exists, after removing a partial last pair.
+	 * @param path - Path of the capture file.
+	 * @throws IOException If the file cannot be written or is not a capture file.
+	 */
+	protected CaptureWriter(String path) throws IOException {
+		File file = new File(path);
+		boolean empty = !file.exists() || file.length() == 0;
+		if (!empty) {
+			long complete = completeLength(file);
+			if (complete < file.length()) {
+				RandomAccessFile raw = new RandomAccessFile(file, "rw");
+				try {
+					raw.setLength(complete);
+				} finally {
+					raw.close();
+				}
+			}
+		}
+		this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), BUFFER_SIZE));
+		this.epochMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+		this.baseNanos = System.nanoTime();
+		if (empty) {
+			out.write(MAGIC);
+		}
+	}
+
+	/**
+	 * Appends a query and its response.
+	 * @param query - An array of bytes holding the query as sent.
+	 * @param response - An array of bytes holding the response, null if none was received.
+	 * @param responseLength - Number of valid bytes in the response.
+	 * @param sentAt - System.nanoTime() when the query was sent.
+	 * @param receivedAt - System.nanoTime() when the response was received; ignored without a response.
+	 * @throws IOException
+	 */
+	protected synchronized void record(byte[] query, byte[] response, int responseLength, long sentAt, long receivedAt)
+			throws IOException {
+		out.writeLong(epochMicros + (sentAt - baseNanos) / 1000);
+		out.writeInt((int) (response == null ? NO_RESPONSE : Math.min((receivedAt - sentAt) / 1000, NO_RESPONSE - 1)));
+		out.writeShort(query.length);
+		out.write(query);
+		if (response == null) {
+			out.writeShort(0);
+		} else {
+			out.writeShort(responseLength);
+			out.write(response, 0, responseLength);
+		}
+	}
+
+	protected synchronized void close() throws IOException {
+		out.close();
+	}
+
+	/**
+	 * Walks the pairs of an existing capture.
+	 * @param file - A capture file.
+	 * @return The length of the file up to the end of its last complete pair.
+	 * @throws IOException If the file cannot be read or is not a capture file.
+	 */
+	private static long completeLength(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+		try {
+			byte[] magic = new byte[MAGIC.length];
+			try {
+				in.readFully(magic);
+			} catch (EOFException e) {
+				throw new IOException("Not a capture file: " + file);
+			}
+			for (int i = 0; i < magic.length; i++) {
+				if (magic[i] != MAGIC[i]) {
+					throw new IOException("Not a capture file: " + file);
+				}
+			}
+			long complete = MAGIC.length;
+			try {
+				while (true) {
+					// Send time and delay, then the query and the response
+					skipFully(in, 12);
+					int queryLength = in.readUnsignedShort();
+					skipFully(in, queryLength);
+					int responseLength = in.readUnsignedShort();
+					skipFully(in, responseLength);
+					complete += 12 + 2 + queryLength + 2 + responseLength;
+				}
+			} catch (EOFException e) {
+				return complete;
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void skipFully(DataInputStream in, int length) throws IOException {
+		if (in.skipBytes(length) < length) {
+			throw new EOFException();
+		}
+	}
+}
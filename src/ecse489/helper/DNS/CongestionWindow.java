@@ -0,0 +1,122 @@
+package ecse489.helper.DNS;
+
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The AIMD window on the number of queries in flight towards one upstream, shared by every {@link Shard}
+ * of a {@link ShardedEngine} so that congestion seen by one worker slows all of them down. The window
+ * grows on clean answers and is halved on timeouts, REFUSED and SERVFAIL. Admitting, releasing and
+ * growing are single atomic operations; only a decrease takes a lock.
+ */
+class CongestionWindow {
+	private static final double MIN_WINDOW = 1;
+	private static final double INITIAL_WINDOW = 32;
+	private static final double MAX_WINDOW = 0xFFFF - 1;
+	// Slow start stops here even before the first sign of congestion
+	private static final double INITIAL_THRESHOLD = 128;
+
+	private final AtomicInteger inFlight = new AtomicInteger(0);
+	// The window as the bits of a double, so that it can grow by fractions without a lock
+	private final AtomicLong window = new AtomicLong(Double.doubleToLongBits(INITIAL_WINDOW));
+	private volatile double threshold = INITIAL_THRESHOLD;
+	private volatile long lastDecrease;
+	// Selectors of shards waiting for room, woken up by the next release. A set, since a shard waking up
+	// for its deadlines waits again without any release in between.
+	private final Set<Selector> waiting = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Package constructor.
+	 * @param now - Current time in nanoseconds.
+	 */
+	protected CongestionWindow(long now) {
+		this.lastDecrease = now;
+	}
+
+	/**
+	 * Takes a place in the window if there is room for another query.
+	 * @return True if the query may be sent.
+	 */
+	protected boolean acquire() {
+		while (true) {
+			int current = inFlight.get();
+			if (current >= getWindow()) {
+				return false;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Gives back the place of a query that left the wire, and wakes up the shards waiting for one.
+	 */
+	protected void release() {
+		inFlight.decrementAndGet();
+		Iterator<Selector> iterator = waiting.iterator();
+		while (iterator.hasNext()) {
+			Selector selector = iterator.next();
+			iterator.remove();
+			selector.wakeup();
+		}
+	}
+
+	protected boolean isFull() {
+		return inFlight.get() >= getWindow();
+	}
+
+	/**
+	 * Asks to be woken up once a place is released, since the release may come from another shard. A
+	 * selector already waiting is not added again.
+	 * @param selector - The selector the waiting shard blocks on.
+	 * @return True if the window is still full, false if a place was released in the meantime.
+	 */
+	protected boolean await(Selector selector) {
+		waiting.add(selector);
+		return isFull();
+	}
+
+	/**
+	 * Grows the window after a clean answer: by one per answer until the first sign of congestion, then
+	 * by one per window's worth of answers.
+	 */
+	protected void onAnswer() {
+		while (true) {
+			long bits = window.get();
+			double current = Double.longBitsToDouble(bits);
+			double grown = Math.min(MAX_WINDOW, current < threshold ? current + 1 : current + 1 / current);
+			if (grown == current || window.compareAndSet(bits, Double.doubleToLongBits(grown))) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Halves the window after a timeout, REFUSED or SERVFAIL. Queries sent before the previous decrease
+	 * report the same congestion event and are ignored, whichever shard sent them.
+	 * @param sentAt - Time in nanoseconds at which the failed query was sent.
+	 * @param now - Current time in nanoseconds.
+	 */
+	protected void onCongestion(long sentAt, long now) {
+		if (sentAt - lastDecrease < 0) {
+			return;
+		}
+		synchronized (this) {
+			if (sentAt - lastDecrease < 0) {
+				return;
+			}
+			threshold = Math.max(MIN_WINDOW, Double.longBitsToDouble(window.get()) / 2);
+			window.set(Double.doubleToLongBits(threshold));
+			lastDecrease = now;
+		}
+	}
+
+	protected int getWindow() {
+		return (int) Double.longBitsToDouble(window.get());
+	}
+}
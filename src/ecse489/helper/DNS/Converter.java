@@ -28,6 +28,133 @@ class Converter {
 		return byteArr;
 	}
 
+	/**
+	 * Converts IPv6 String to a byte array. Accepts the :: shorthand, a trailing dotted IPv4 part and
+	 * surrounding brackets.
+	 * @param IPAddress - A String representing an IPv6 address.
+	 * @return A byte array of size 16
+	 * @throws IllegalArgumentFormatException
+	 */
+	protected static byte[] convertIPv6StringToByteArray(String IPAddress) throws IllegalArgumentFormatException {
+		String address = IPAddress;
+		if (address.startsWith("[") && address.endsWith("]")) {
+			address = address.substring(1, address.length() - 1);
+		}
+		int shorthand = address.indexOf("::");
+		if (shorthand != address.lastIndexOf("::")) {
+			throw new IllegalArgumentFormatException("IP address is not type IPv6");
+		}
+
+		// Groups before and after the :: shorthand, if any
+		int[] head = parseIPv6Groups(shorthand == -1 ? address : address.substring(0, shorthand));
+		int[] tail = shorthand == -1 ? new int[0] : parseIPv6Groups(address.substring(shorthand + 2));
+		if ((shorthand == -1 && head.length != 8) || (shorthand != -1 && head.length + tail.length > 7)) {
+			throw new IllegalArgumentFormatException("IP address is not type IPv6");
+		}
+
+		byte[] byteArr = new byte[16];
+		for (int i = 0; i < head.length; i++) {
+			byteArr[2 * i] = (byte) (head[i] >> 8);
+			byteArr[2 * i + 1] = (byte) head[i];
+		}
+		for (int i = 0; i < tail.length; i++) {
+			int group = 8 - tail.length + i;
+			byteArr[2 * group] = (byte) (tail[i] >> 8);
+			byteArr[2 * group + 1] = (byte) tail[i];
+		}
+		return byteArr;
+	}
+
+	/**
+	 * Parses colon separated groups of an IPv6 address, a dotted IPv4 last part counting as two groups.
+	 * @param groups - A String holding groups, possibly empty.
+	 * @return An array of 16 bit groups.
+	 * @throws IllegalArgumentFormatException
+	 */
+	private static int[] parseIPv6Groups(String groups) throws IllegalArgumentFormatException {
+		if (groups.isEmpty()) {
+			return new int[0];
+		}
+		String[] parts = groups.split(":", -1);
+		boolean embedded = parts[parts.length - 1].indexOf('.') != -1;
+		int[] output = new int[embedded ? parts.length + 1 : parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			if (embedded && i == parts.length - 1) {
+				byte[] ipv4 = convertIPStringToByteArray(parts[i]);
+				output[i] = ((ipv4[0] & 0xFF) << 8) | (ipv4[1] & 0xFF);
+				output[i + 1] = ((ipv4[2] & 0xFF) << 8) | (ipv4[3] & 0xFF);
+				break;
+			}
+			if (parts[i].isEmpty() || parts[i].length() > 4) {
+				throw new IllegalArgumentFormatException("IP address is not type IPv6");
+			}
+			for (int j = 0; j < parts[i].length(); j++) {
+				int digit = Character.digit(parts[i].charAt(j), 16);
+				if (digit < 0) {
+					throw new IllegalArgumentFormatException("IP address is not type IPv6");
+				}
+				output[i] = (output[i] << 4) | digit;
+			}
+		}
+		return output;
+	}
+
+	/**
+	 * Converts an IPv4 or IPv6 String to a byte array.
+	 * @param IPAddress - A String representing an IPv4 or IPv6 address.
+	 * @return A byte array of size 4 or 16
+	 * @throws IllegalArgumentFormatException
+	 */
+	protected static byte[] convertIPStringToByteArray(String IPAddress) throws IllegalArgumentFormatException {
+		if (IPAddress.indexOf(':') != -1) {
+			return convertIPv6StringToByteArray(IPAddress);
+		}
+		try {
+			return convertIPv4StringToByteArray(IPAddress);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentFormatException("IP address is neither IPv4 nor IPv6");
+		}
+	}
+
+	/**
+	 * Writes an IPv6 address in its canonical text form (RFC 5952): lower case groups without leading
+	 * zeros, the longest run of two or more zero groups shortened to ::.
+	 * @param address - An array of bytes holding the address.
+	 * @param offset - Offset of the first of the 16 bytes.
+	 * @param out - Receives the address.
+	 */
+	protected static void appendIPv6(byte[] address, int offset, StringBuilder out) {
+		int[] groups = new int[8];
+		for (int i = 0; i < 8; i++) {
+			groups[i] = ((address[offset + 2 * i] & 0xFF) << 8) | (address[offset + 2 * i + 1] & 0xFF);
+		}
+		// Find the first longest run of zero groups
+		int bestStart = -1;
+		int bestLength = 1;
+		for (int i = 0; i < 8; i++) {
+			int length = 0;
+			while (i + length < 8 && groups[i + length] == 0) {
+				length++;
+			}
+			if (length > bestLength) {
+				bestStart = i;
+				bestLength = length;
+			}
+			i += length;
+		}
+		for (int i = 0; i < 8; i++) {
+			if (i == bestStart) {
+				out.append("::");
+				i += bestLength - 1;
+				continue;
+			}
+			if (i != 0 && i != bestStart + bestLength) {
+				out.append(':');
+			}
+			out.append(Integer.toHexString(groups[i]));
+		}
+	}
+
 	/**
 	 * Converts an array of Byte objects into an array of bytes (primitive).
 	 * @param arr An array of Bytes (object).
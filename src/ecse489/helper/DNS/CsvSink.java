@@ -0,0 +1,105 @@
+package ecse489.helper.DNS;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * RFC 4180 CSV with one row per record of every section, or a single row with empty record columns
+ * when the lookup returned no records.
+ */
+class CsvSink extends TextSink {
+	private static final String HEADER = "name,type,status,rtt_ms,retries,cached,section,record_name,record_type,ttl,preference,data";
+	private static final String[] SECTIONS = { "answer", "authority", "additional" };
+
+	private boolean headerWritten = false;
+
+	protected CsvSink(OutputStream out) {
+		super(out);
+	}
+
+	@Override
+	public void write(LookupResult result) throws IOException {
+		if (!headerWritten) {
+			headerWritten = true;
+			line.append(header());
+			emit();
+		}
+		super.write(result);
+	}
+
+	/**
+	 * @return The first row, naming the columns.
+	 */
+	protected String header() {
+		return HEADER;
+	}
+
+	@Override
+	protected void render(LookupResult result) {
+		int rows = 0;
+		if (wrap(result)) {
+			for (int i = 0; view.has(i); i++) {
+				if (rows != 0) {
+					line.append('\n');
+				}
+				appendLookup(result, result.getStatus());
+				line.append(SECTIONS[view.getSection(i)]).append(',');
+				appendQuoted(line, view.getName(i));
+				line.append(',').append(ResponseView.typeToString(view.getType(i)));
+				line.append(',').append(view.getTtl(i) & 0xFFFFFFFFL).append(',');
+				if (view.getType(i) == ResponseView.TYPE_MX) {
+					line.append(view.getPreference(i));
+				}
+				line.append(',');
+				field.setLength(0);
+				view.appendData(i, field);
+				appendQuoted(line, field);
+				rows++;
+			}
+		}
+		if (rows == 0) {
+			appendLookup(result, result.getStatus());
+			line.append(",,,,,");
+		}
+	}
+
+	@Override
+	protected void renderMalformed(LookupResult result) {
+		appendLookup(result, "FORMERR");
+		line.append(",,,,,");
+	}
+
+	/**
+	 * Appends the columns describing the lookup itself.
+	 */
+	protected void appendLookup(LookupResult result, String status) {
+		appendQuoted(line, result.getName());
+		line.append(',').append(result.getDNS()).append(',').append(status).append(',');
+		appendMillis(result.getElapsedNanos());
+		line.append(',').append(result.getTries()).append(',').append(result.isCached()).append(',');
+	}
+
+	/**
+	 * Appends a field, quoting it only if it holds a comma, quote or line break.
+	 */
+	protected static void appendQuoted(StringBuilder line, CharSequence field) {
+		boolean quote = false;
+		for (int i = 0; i < field.length() && !quote; i++) {
+			char c = field.charAt(i);
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		if (!quote) {
+			line.append(field);
+			return;
+		}
+		line.append('"');
+		for (int i = 0; i < field.length(); i++) {
+			char c = field.charAt(i);
+			if (c == '"') {
+				line.append('"');
+			}
+			line.append(c);
+		}
+		line.append('"');
+	}
+}
@@ -3,5 +3,7 @@ package ecse489.helper.DNS;
 public enum DNSCategory {
     A,
     MX,
-    NS
+    NS,
+    PTR,
+    AAAA
 }
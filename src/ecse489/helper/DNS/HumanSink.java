@@ -0,0 +1,41 @@
+package ecse489.helper.DNS;
+
+import java.io.OutputStream;
+
+/**
+ * One tab separated line per lookup: name, status, round trip time, retries, then the data of every
+ * answer record.
+ */
+class HumanSink extends TextSink {
+	protected HumanSink(OutputStream out) {
+		super(out);
+	}
+
+	@Override
+	protected void render(LookupResult result) {
+		appendLookup(result, result.getStatus());
+		if (wrap(result)) {
+			for (int i = 0; i < view.getCount(ResponseView.ANSWER) && view.has(i); i++) {
+				line.append(i == 0 ? '\t' : ',');
+				view.appendData(i, line);
+			}
+		}
+	}
+
+	@Override
+	protected void renderMalformed(LookupResult result) {
+		appendLookup(result, "FORMERR");
+	}
+
+	/**
+	 * Appends the columns describing the lookup itself.
+	 */
+	protected void appendLookup(LookupResult result, String status) {
+		line.append(result.getName()).append('\t').append(status).append('\t');
+		appendMillis(result.getElapsedNanos());
+		line.append(" ms\t").append(result.getTries()).append(" retries");
+		if (result.isCached()) {
+			line.append("\tcached");
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package ecse489.helper.DNS;
+
+import java.io.OutputStream;
+
+/**
+ * JSON Lines: one object per lookup, holding every record of the response.
+ *
+ * {"name":"mcgill.ca","type":"MX","status":"NOERROR","rtt_ms":12.345,"retries":0,"cached":false,
+ *  "auth":false,"records":[{"section":"answer","name":"mcgill.ca","type":"MX","ttl":300,
+ *  "preference":10,"data":"mx.mcgill.ca"}]}
+ */
+class JsonLinesSink extends TextSink {
+	private static final String[] SECTIONS = { "answer", "authority", "additional" };
+
+	protected JsonLinesSink(OutputStream out) {
+		super(out);
+	}
+
+	@Override
+	protected void render(LookupResult result) {
+		appendLookup(result, result.getStatus());
+		if (wrap(result)) {
+			line.append(",\"auth\":").append(view.isAuthoritative());
+			line.append(",\"records\":[");
+			for (int i = 0; view.has(i); i++) {
+				if (i != 0) {
+					line.append(',');
+				}
+				line.append("{\"section\":\"").append(SECTIONS[view.getSection(i)]);
+				line.append("\",\"name\":");
+				appendString(line, view.getName(i));
+				line.append(",\"type\":\"").append(ResponseView.typeToString(view.getType(i)));
+				line.append("\",\"ttl\":").append(view.getTtl(i) & 0xFFFFFFFFL);
+				if (view.getType(i) == ResponseView.TYPE_MX) {
+					line.append(",\"preference\":").append(view.getPreference(i));
+				}
+				line.append(",\"data\":");
+				field.setLength(0);
+				view.appendData(i, field);
+				appendString(line, field);
+				line.append('}');
+			}
+			line.append(']');
+		}
+		line.append('}');
+	}
+
+	@Override
+	protected void renderMalformed(LookupResult result) {
+		appendLookup(result, "FORMERR");
+		line.append('}');
+	}
+
+	/**
+	 * Appends the fields describing the lookup itself, leaving the object open.
+	 */
+	protected void appendLookup(LookupResult result, String status) {
+		line.append("{\"name\":");
+		appendString(line, result.getName());
+		line.append(",\"type\":\"").append(result.getDNS());
+		line.append("\",\"status\":\"").append(status);
+		line.append("\",\"rtt_ms\":");
+		appendMillis(result.getElapsedNanos());
+		line.append(",\"retries\":").append(result.getTries());
+		line.append(",\"cached\":").append(result.isCached());
+	}
+
+	/**
+	 * Appends a quoted JSON string. Bytes outside printable ASCII are escaped so the output stays ASCII.
+	 */
+	protected static void appendString(StringBuilder line, CharSequence value) {
+		line.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				line.append('\\').append(c);
+			} else if (c < 0x20 || c > 0x7E) {
+				line.append("\\u00").append(Character.forDigit((c >> 4) & 0x0F, 16)).append(Character.forDigit(c & 0x0F, 16));
+			} else {
+				line.append(c);
+			}
+		}
+		line.append('"');
+	}
+}
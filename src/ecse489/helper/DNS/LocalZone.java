@@ -0,0 +1,416 @@
+package ecse489.helper.DNS;
+
+import ecse489.helper.IllegalArgumentFormatException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Names answered locally, without querying the server: internal services, blocked domains. The zone is
+ * loaded from a file mixing two formats, line by line:
+ *
+ * hosts lines		address name [aliases...]	(A or AAAA records, and a PTR record for the first name)
+ * zone lines		name [ttl] [IN] type data	(A, AAAA, NS, MX and PTR records; $ORIGIN and $TTL directives)
+ *
+ * Zone names not ending in a dot are relative to $ORIGIN, @ stands for $ORIGIN itself, a line starting
+ * with a blank reuses the previous name and *.name is a wildcard. Other record types are skipped.
+ * Comments start with # or ;.
+ *
+ * Answers are built in wire format, so callers handle them like any response from the server. Once
+ * {@link #watch()} is called the file is reloaded whenever it changes: the new trie is built aside and
+ * swapped in whole, so lookups never wait and never see a partly loaded zone.
+ */
+public class LocalZone {
+	private static final int DEFAULT_TTL = 300;
+	private static final long RELOAD_INTERVAL_MILLIS = 1000;
+
+	private final File file;
+	private volatile ZoneTrie trie;
+	private long lastModified;
+	private long length;
+	private Thread watcher;
+	private volatile boolean watching = false;
+
+	/**
+	 * Public constructor. Loads the zone.
+	 * @param path Path of the hosts or zone file
+	 * @throws IOException
+	 * @throws IllegalArgumentFormatException If a line cannot be read.
+	 */
+	public LocalZone(String path) throws IOException, IllegalArgumentFormatException {
+		this.file = new File(path);
+		this.lastModified = file.lastModified();
+		this.length = file.length();
+		this.trie = load(file);
+	}
+
+	/**
+	 * @return The number of records held.
+	 */
+	public int size() {
+		return trie.size();
+	}
+
+	/**
+	 * Loads the file again and swaps the new zone in. The current zone is kept if the file cannot be
+	 * loaded.
+	 * @return True if the new zone was swapped in.
+	 */
+	public boolean reload() {
+		long modified = file.lastModified();
+		long size = file.length();
+		try {
+			ZoneTrie loaded = load(file);
+			trie = loaded;
+			lastModified = modified;
+			length = size;
+			return true;
+		} catch (IOException | IllegalArgumentFormatException e) {
+			// Do not try again until the file changes once more
+			lastModified = modified;
+			length = size;
+			System.err.println("ERROR	Could not reload " + file + ", keeping the previous zone: "
+					+ e.getLocalizedMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Starts reloading the zone whenever the file changes.
+	 */
+	public void watch() {
+		watching = true;
+		watcher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (watching) {
+					try {
+						Thread.sleep(RELOAD_INTERVAL_MILLIS);
+					} catch (InterruptedException e) {
+						return;
+					}
+					if (file.lastModified() != lastModified || file.length() != length) {
+						if (reload()) {
+							System.err.println("Reloaded " + file + ": " + size() + " records");
+						}
+					}
+				}
+			}
+		}, "dns-zone-watcher");
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+
+	/**
+	 * Stops watching the file.
+	 */
+	public void close() {
+		watching = false;
+		if (watcher != null) {
+			watcher.interrupt();
+		}
+	}
+
+	/**
+	 * Answers a query from the zone. The response is authoritative and holds every record of the queried
+	 * type, none if the name only has records of other types, plus the addresses the zone knows for the
+	 * exchanges and name servers answered.
+	 * @param id An integer representing the 16 bit transaction ID to answer with
+	 * @param name A String representing the domain name queried
+	 * @param dns The DNS request type
+	 * @return An array of bytes holding the response, or null if the zone does not hold the name.
+	 */
+	public byte[] answer(int id, String name, DNSCategory dns) {
+		ZoneTrie zone = trie;
+		ZoneTrie.Record[] records = zone.lookup(name);
+		if (records == null) {
+			return null;
+		}
+
+		int type = Message.typeOf(dns);
+		byte[] query;
+		try {
+			query = Message.buildQuery(id, name, dns);
+		} catch (IllegalArgumentFormatException e) {
+			// Cannot be queried, so cannot be answered either
+			return null;
+		}
+		int length = query.length;
+		int numOfAnswers = 0;
+		List<ZoneTrie.Record> glue = null;
+		List<String> glueNames = null;
+		for (ZoneTrie.Record record : records) {
+			if (record.type != type) {
+				continue;
+			}
+			numOfAnswers++;
+			length += 12 + record.data.length;
+			if (record.target != null && type != ResponseView.TYPE_PTR) {
+				ZoneTrie.Record[] targets = zone.lookup(record.target);
+				for (int i = 0; targets != null && i < targets.length; i++) {
+					if (targets[i].type == ResponseView.TYPE_A || targets[i].type == ResponseView.TYPE_AAAA) {
+						if (glue == null) {
+							glue = new ArrayList<ZoneTrie.Record>();
+							glueNames = new ArrayList<String>();
+						}
+						glue.add(targets[i]);
+						glueNames.add(record.target);
+						length += encodedLength(record.target) + 10 + targets[i].data.length;
+					}
+				}
+			}
+		}
+		int numOfGlue = glue == null ? 0 : glue.size();
+
+		byte[] response = new byte[length];
+		System.arraycopy(query, 0, response, 0, query.length);
+		// QR: 1, Opcode: 0000, AA: 1, TC: 0, RD: 1, RA: 1, Z: 000, Rcode: 0000
+		response[0x02] = (byte) 0x85;
+		response[0x03] = (byte) 0x80;
+		response[0x06] = (byte) (numOfAnswers >> 8);
+		response[0x07] = (byte) numOfAnswers;
+		response[0x0A] = (byte) (numOfGlue >> 8);
+		response[0x0B] = (byte) numOfGlue;
+
+		int pointer = query.length;
+		for (ZoneTrie.Record record : records) {
+			if (record.type == type) {
+				// The owner is the question name, even when a wildcard matched
+				response[pointer++] = (byte) 0xC0;
+				response[pointer++] = (byte) Message.HEADER_LENGTH;
+				pointer = writeRecord(response, pointer, record);
+			}
+		}
+		for (int i = 0; i < numOfGlue; i++) {
+			pointer = encodeName(glueNames.get(i), response, pointer);
+			pointer = writeRecord(response, pointer, glue.get(i));
+		}
+		return response;
+	}
+
+	/**
+	 * Writes the type, class, TTL and data of a record.
+	 * @return The position following the record.
+	 */
+	private static int writeRecord(byte[] response, int pointer, ZoneTrie.Record record) {
+		int[] fields = { record.type >> 8, record.type, 0x00, 0x01, record.ttl >> 24, record.ttl >> 16,
+				record.ttl >> 8, record.ttl, record.data.length >> 8, record.data.length };
+		for (int field : fields) {
+			response[pointer++] = (byte) field;
+		}
+		System.arraycopy(record.data, 0, response, pointer, record.data.length);
+		return pointer + record.data.length;
+	}
+
+	/**
+	 * Reads a hosts or zone file.
+	 */
+	private static ZoneTrie load(File file) throws IOException, IllegalArgumentFormatException {
+		ZoneTrie zone = new ZoneTrie();
+		String origin = "";
+		String owner = null;
+		int ttl = DEFAULT_TTL;
+		int lineNumber = 0;
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+				StandardCharsets.US_ASCII));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				String content = stripComment(line);
+				// Records such as SOA may span lines within parentheses
+				while (content.indexOf('(') != -1 && content.indexOf(')') == -1) {
+					String next = reader.readLine();
+					if (next == null) {
+						throw new IllegalArgumentFormatException("Line " + lineNumber + ": unbalanced parenthesis.");
+					}
+					lineNumber++;
+					content += " " + stripComment(next);
+				}
+				String[] tokens = content.replace('(', ' ').replace(')', ' ').trim().split("\\s+");
+				if (tokens[0].isEmpty()) {
+					continue;
+				}
+				boolean continuation = Character.isWhitespace(line.charAt(0));
+
+				try {
+					if (tokens[0].equalsIgnoreCase("$ORIGIN")) {
+						origin = absolute(tokens[1], "");
+					} else if (tokens[0].equalsIgnoreCase("$TTL")) {
+						ttl = Integer.parseInt(tokens[1]);
+					} else if (tokens[0].startsWith("$")) {
+						// $INCLUDE and $GENERATE are not supported
+						continue;
+					} else if (!continuation && (isIPv4(tokens[0]) || tokens[0].indexOf(':') != -1)) {
+						addHostsLine(zone, tokens, ttl);
+					} else {
+						int next = 0;
+						if (!continuation) {
+							owner = absolute(tokens[next++], origin);
+						} else if (owner == null) {
+							throw new IllegalArgumentFormatException("no name to continue.");
+						}
+						next = addZoneLine(zone, owner, tokens, next, ttl, origin);
+						if (next < 0) {
+							throw new IllegalArgumentFormatException("incomplete record.");
+						}
+					}
+				} catch (IllegalArgumentFormatException e) {
+					throw new IllegalArgumentFormatException("Line " + lineNumber + ": " + e.getLocalizedMessage());
+				} catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+					throw new IllegalArgumentFormatException("Line " + lineNumber + ": cannot read \"" + line.trim()
+							+ "\".");
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return zone;
+	}
+
+	/**
+	 * Adds the A or AAAA records of a hosts line, and the PTR record of its address for the first name.
+	 */
+	private static void addHostsLine(ZoneTrie zone, String[] tokens, int ttl)
+			throws IllegalArgumentFormatException {
+		byte[] address = Converter.convertIPStringToByteArray(tokens[0]);
+		int type = address.length == 16 ? ResponseView.TYPE_AAAA : ResponseView.TYPE_A;
+		for (int i = 1; i < tokens.length; i++) {
+			zone.add(absolute(tokens[i], ""), new ZoneTrie.Record(type, ttl, address, null));
+		}
+		if (tokens.length > 1) {
+			String host = absolute(tokens[1], "");
+			zone.add(ReverseNames.toReverseName(tokens[0]),
+					new ZoneTrie.Record(ResponseView.TYPE_PTR, ttl, encodeName(host), host));
+		}
+	}
+
+	/**
+	 * Adds the record of a zone line.
+	 * @param next - Index of the token following the name.
+	 * @return The index of the token following the record, or -1 if the record is incomplete.
+	 */
+	private static int addZoneLine(ZoneTrie zone, String owner, String[] tokens, int next, int ttl,
+			String origin) throws IllegalArgumentFormatException {
+		// TTL and class come in either order and are both optional
+		for (int i = 0; i < 2 && next < tokens.length; i++) {
+			if (tokens[next].equalsIgnoreCase("IN")) {
+				next++;
+			} else if (Character.isDigit(tokens[next].charAt(0))) {
+				ttl = Integer.parseInt(tokens[next++]);
+			}
+		}
+		if (next + 1 >= tokens.length) {
+			return -1;
+		}
+		String type = tokens[next++].toUpperCase(Locale.ROOT);
+		switch (type) {
+			case "A":
+				zone.add(owner, new ZoneTrie.Record(ResponseView.TYPE_A, ttl,
+						Converter.convertIPv4StringToByteArray(tokens[next]), null));
+				return next + 1;
+			case "AAAA":
+				zone.add(owner, new ZoneTrie.Record(ResponseView.TYPE_AAAA, ttl,
+						Converter.convertIPv6StringToByteArray(tokens[next]), null));
+				return next + 1;
+			case "NS":
+			case "PTR":
+				String target = absolute(tokens[next], origin);
+				zone.add(owner, new ZoneTrie.Record(type.equals("NS") ? ResponseView.TYPE_NS : ResponseView.TYPE_PTR,
+						ttl, encodeName(target), target));
+				return next + 1;
+			case "MX":
+				if (next + 1 >= tokens.length) {
+					return -1;
+				}
+				int preference = Integer.parseInt(tokens[next]);
+				String exchange = absolute(tokens[next + 1], origin);
+				byte[] data = new byte[2 + encodedLength(exchange)];
+				data[0] = (byte) (preference >> 8);
+				data[1] = (byte) preference;
+				encodeName(exchange, data, 2);
+				zone.add(owner, new ZoneTrie.Record(ResponseView.TYPE_MX, ttl, data, exchange));
+				return next + 2;
+			default:
+				// Record types the client never queries
+				return tokens.length;
+		}
+	}
+
+	/**
+	 * Resolves a name of the file: @ is the origin, names ending in a dot are absolute and any other name
+	 * is relative to the origin.
+	 * @return The name without its trailing dot.
+	 */
+	private static String absolute(String name, String origin) {
+		if (name.equals("@")) {
+			return origin;
+		}
+		if (name.endsWith(".")) {
+			return name.substring(0, name.length() - 1);
+		}
+		return origin.isEmpty() ? name : name + "." + origin;
+	}
+
+	private static String stripComment(String line) {
+		for (int i = 0; i < line.length(); i++) {
+			if (line.charAt(i) == '#' || line.charAt(i) == ';') {
+				return line.substring(0, i);
+			}
+		}
+		return line;
+	}
+
+	private static boolean isIPv4(String token) {
+		int dots = 0;
+		for (int i = 0; i < token.length(); i++) {
+			char c = token.charAt(i);
+			if (c == '.') {
+				dots++;
+			} else if (c < '0' || c > '9') {
+				return false;
+			}
+		}
+		return dots == 3;
+	}
+
+	/**
+	 * @return The length of a name in wire format, every label prefixed by its length.
+	 */
+	private static int encodedLength(String name) {
+		return name.isEmpty() ? 1 : name.length() + 2;
+	}
+
+	private static byte[] encodeName(String name) {
+		byte[] data = new byte[encodedLength(name)];
+		encodeName(name, data, 0);
+		return data;
+	}
+
+	/**
+	 * Writes a name in wire format, uncompressed.
+	 * @return The position following the name.
+	 */
+	private static int encodeName(String name, byte[] buffer, int pointer) {
+		int labelStart = 0;
+		for (int i = 0; i <= name.length() && !name.isEmpty(); i++) {
+			if (i == name.length() || name.charAt(i) == '.') {
+				buffer[pointer++] = (byte) (i - labelStart);
+				for (int j = labelStart; j < i; j++) {
+					buffer[pointer++] = (byte) name.charAt(j);
+				}
+				labelStart = i + 1;
+			}
+		}
+		buffer[pointer++] = 0x00;
+		return pointer;
+	}
+}
@@ -0,0 +1,12 @@
+package ecse489.helper.DNS;
+
+/**
+ * Receives the outcome of a lookup submitted to a bulk engine. Called from the engine's worker
+ * threads, so implementations must be thread safe and should return quickly.
+ */
+public interface LookupHandler {
+	/**
+	 * @param result The completed lookup.
+	 */
+	void onResult(LookupResult result);
+}
@@ -0,0 +1,100 @@
+package ecse489.helper.DNS;
+
+/**
+ * The outcome of a single lookup performed by a bulk engine.
+ */
+public class LookupResult {
+	private String name;
+	private DNSCategory dns;
+	private byte[] response;
+	private int tries;
+	private long elapsedNanos;
+	private boolean cached;
+	// Why the lookup failed without being answered or timing out, null otherwise
+	private String error;
+
+	/**
+	 * Public constructor.
+	 * @param name Domain name that was looked up
+	 * @param dns DNS request type
+	 * @param response Raw response, null if every retry timed out
+	 * @param tries Number of retries used
+	 * @param elapsedNanos Time between submission and completion
+	 * @param cached Whether the response was served from the cache or the local zone
+	 */
+	public LookupResult(String name, DNSCategory dns, byte[] response, int tries, long elapsedNanos, boolean cached) {
+		this.name = name;
+		this.dns = dns;
+		this.response = response;
+		this.tries = tries;
+		this.elapsedNanos = elapsedNanos;
+		this.cached = cached;
+	}
+
+	/**
+	 * Public constructor for a lookup that failed before an answer could arrive.
+	 * @param name Domain name that was looked up
+	 * @param dns DNS request type
+	 * @param error Status to report, such as BADNAME for a name that cannot be queried
+	 * @param elapsedNanos Time between submission and completion
+	 */
+	public LookupResult(String name, DNSCategory dns, String error, long elapsedNanos) {
+		this(name, dns, null, 0, elapsedNanos, false);
+		this.error = error;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public DNSCategory getDNS() {
+		return dns;
+	}
+
+	/**
+	 * @return The raw response, trimmed to its received length, or null on timeout or failure.
+	 */
+	public byte[] getResponse() {
+		return response;
+	}
+
+	public int getTries() {
+		return tries;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public boolean isCached() {
+		return cached;
+	}
+
+	public boolean isTimeout() {
+		return response == null && error == null;
+	}
+
+	/**
+	 * @return True if the lookup failed without a response, for a reason other than a timeout.
+	 */
+	public boolean isFailed() {
+		return error != null;
+	}
+
+	/**
+	 * @return The response code, or -1 without a response.
+	 */
+	public int getRcode() {
+		return response == null ? -1 : Message.getRcode(response);
+	}
+
+	/**
+	 * @return A String such as NOERROR, NXDOMAIN, TIMEOUT or the error of a failed lookup.
+	 */
+	public String getStatus() {
+		if (error != null) {
+			return error;
+		}
+		return response == null ? "TIMEOUT" : Message.rcodeToString(getRcode());
+	}
+}
@@ -0,0 +1,216 @@
+package ecse489.helper.DNS;
+
+import ecse489.helper.IllegalArgumentFormatException;
+
+/**
+ * Wire format helpers shared by the single lookup {@link Request} and the bulk engines.
+ */
+class Message {
+	protected static final int HEADER_LENGTH = 0x0C;
+	// Limits of RFC 1035, section 2.3.4
+	protected static final int MAX_LABEL_LENGTH = 63;
+	protected static final int MAX_NAME_LENGTH = 255;
+
+	protected static final int RCODE_NOERROR = 0x00;
+	protected static final int RCODE_SERVFAIL = 0x02;
+	protected static final int RCODE_NXDOMAIN = 0x03;
+	protected static final int RCODE_REFUSED = 0x05;
+
+	/**
+	 * Builds a standard recursive query for a single name.
+	 * @param id - An integer representing the 16 bit transaction ID.
+	 * @param name - A String representing the domain name to lookup.
+	 * @param dns - The DNS request type.
+	 * @return An array of bytes.
+	 * @throws IllegalArgumentFormatException If a label is longer than 63 octets or the name longer than 255.
+	 */
+	protected static byte[] buildQuery(int id, String name, DNSCategory dns) throws IllegalArgumentFormatException {
+		// Header, every label prefixed by its length, the 0x00 terminator, QTYPE and QCLASS
+		byte[] buffer = new byte[HEADER_LENGTH + name.length() + 2 + 4];
+		int pointer = 0;
+
+		// Transaction ID
+		buffer[pointer++] = (byte) (id >> 8);
+		buffer[pointer++] = (byte) id;
+
+		// QR: 0, Opcode: 0000, AA: 0, TC: 0, RD: 1	(Recursion desired)
+		buffer[pointer++] = (byte) 0x01;
+
+		// RA: 0, Z: 000, Rcode: 0000
+		buffer[pointer++] = (byte) 0x00;
+
+		// QDCOUNT: 0x0001	(One question follows)
+		// ANCOUNT, NSCOUNT and ARCOUNT are left at 0x0000
+		buffer[pointer++] = (byte) 0x00;
+		buffer[pointer++] = (byte) 0x01;
+		pointer = HEADER_LENGTH;
+
+		// Write every label preceded by its length
+		int labelStart = 0;
+		for (int i = 0; i <= name.length(); i++) {
+			if (i == name.length() || name.charAt(i) == '.') {
+				if (i - labelStart > MAX_LABEL_LENGTH) {
+					throw new IllegalArgumentFormatException("Label longer than " + MAX_LABEL_LENGTH + " octets in "
+							+ name);
+				}
+				if (i > labelStart) {
+					buffer[pointer++] = (byte) (i - labelStart);
+					for (int j = labelStart; j < i; j++) {
+						buffer[pointer++] = (byte) name.charAt(j);
+					}
+				}
+				labelStart = i + 1;
+			}
+		}
+
+		// Indicates end of name
+		buffer[pointer++] = (byte) 0x00;
+		if (pointer - HEADER_LENGTH > MAX_NAME_LENGTH) {
+			throw new IllegalArgumentFormatException("Name longer than " + MAX_NAME_LENGTH + " octets: " + name);
+		}
+
+		// QTYPE
+		buffer[pointer++] = (byte) 0x00;
+		buffer[pointer++] = (byte) typeOf(dns);
+
+		// QCLASS: 0x0001	(Internet address)
+		buffer[pointer++] = (byte) 0x00;
+		buffer[pointer++] = (byte) 0x01;
+
+		// Leading, trailing or doubled dots leave the buffer slightly oversized
+		if (pointer != buffer.length) {
+			byte[] trimmed = new byte[pointer];
+			System.arraycopy(buffer, 0, trimmed, 0, pointer);
+			return trimmed;
+		}
+		return buffer;
+	}
+
+	/**
+	 * @param dns - The DNS request type.
+	 * @return The record type code queried for.
+	 */
+	protected static int typeOf(DNSCategory dns) {
+		switch(dns) {
+			case NS: return 0x02;
+			case MX: return 0x0F;
+			case PTR: return 0x0C;
+			case AAAA: return 0x1C;
+			default: return 0x01;
+		}
+	}
+
+	/**
+	 * Reads an unsigned 16 bit integer.
+	 * @param response - An array of bytes representing a DNS message.
+	 * @param pointer - An integer pointer to the upper byte.
+	 * @return An integer between 0 and 65535.
+	 */
+	protected static int readShort(byte[] response, int pointer) {
+		return ((response[pointer] << 8) & 0x0000FF00) | (response[pointer + 1] & 0x000000FF);
+	}
+
+	/**
+	 * Reads a 32 bit integer.
+	 * @param response - An array of bytes representing a DNS message.
+	 * @param pointer - An integer pointer to the upper byte.
+	 * @return An integer.
+	 */
+	protected static int readInt(byte[] response, int pointer) {
+		return ((response[pointer] << 24) & 0xFF000000) | ((response[pointer + 1] << 16) & 0x00FF0000) |
+			   ((response[pointer + 2] << 8) & 0x0000FF00) | (response[pointer + 3] & 0x000000FF);
+	}
+
+	/**
+	 * @param response - An array of bytes representing a DNS message.
+	 * @return The 16 bit transaction ID.
+	 */
+	protected static int getId(byte[] response) {
+		return readShort(response, 0x00);
+	}
+
+	/**
+	 * @param response - An array of bytes representing a DNS message.
+	 * @return True if the QR bit marks the message as a response.
+	 */
+	protected static boolean isResponse(byte[] response) {
+		return (response[0x02] & 0x80) == 0x80;
+	}
+
+	/**
+	 * @param response - An array of bytes representing a DNS message.
+	 * @return The 4 bit response code.
+	 */
+	protected static int getRcode(byte[] response) {
+		return response[0x03] & 0x0F;
+	}
+
+	/**
+	 * Skips over a possibly compressed name.
+	 * @param response - An array of bytes representing a DNS message.
+	 * @param pointer - An integer pointer to the first length byte of the name.
+	 * @return An integer pointer to the byte following the name.
+	 */
+	protected static int skipName(byte[] response, int pointer) {
+		while (true) {
+			int length = response[pointer] & 0xFF;
+			if (length == 0x00) {
+				return pointer + 1;
+			}
+			// A compression pointer always ends the name
+			if ((length & 0xC0) == 0xC0) {
+				return pointer + 2;
+			}
+			pointer += length + 1;
+		}
+	}
+
+	/**
+	 * Finds the smallest TTL in the answer section, used to decide how long a response may be cached.
+	 * @param response - An array of bytes representing a DNS response.
+	 * @param length - An integer representing the number of valid bytes in the response.
+	 * @return The smallest TTL in seconds, or -1 if the response holds no answers.
+	 */
+	protected static int minimumAnswerTtl(byte[] response, int length) {
+		int numOfAnswers = readShort(response, 0x06);
+		int numOfQuestions = readShort(response, 0x04);
+		int minimum = -1;
+		try {
+			int pointer = HEADER_LENGTH;
+			for (int i = 0; i < numOfQuestions; i++) {
+				pointer = skipName(response, pointer) + 4;
+			}
+			for (int i = 0; i < numOfAnswers; i++) {
+				pointer = skipName(response, pointer);
+				int ttl = readInt(response, pointer + 4);
+				pointer += 10 + readShort(response, pointer + 8);
+				if (pointer > length) {
+					return -1;
+				}
+				if (minimum == -1 || (ttl >= 0 && ttl < minimum)) {
+					minimum = Math.max(ttl, 0);
+				}
+			}
+		} catch (IndexOutOfBoundsException e) {
+			return -1;
+		}
+		return minimum;
+	}
+
+	/**
+	 * Converts a response code into its mnemonic.
+	 * @param rcode - An integer representing the response code.
+	 * @return A String such as NOERROR or NXDOMAIN.
+	 */
+	protected static String rcodeToString(int rcode) {
+		switch(rcode) {
+			case 0x00: return "NOERROR";
+			case 0x01: return "FORMERR";
+			case 0x02: return "SERVFAIL";
+			case 0x03: return "NXDOMAIN";
+			case 0x04: return "NOTIMP";
+			case 0x05: return "REFUSED";
+			default: return "RCODE" + rcode;
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package ecse489.helper.DNS;
+
+import ecse489.helper.IllegalArgumentFormatException;
+import ecse489.helper.Options;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Resolves the mail exchanges of every domain together with their addresses. Addresses are taken from
+ * the additional section of the MX response when the server sent them as glue; A queries are only
+ * issued, all at once and through the shared {@link ShardedEngine}, for the exchanges left without one.
+ * Each domain is written as an {@link MxResult}, with its exchanges sorted by preference, through an
+ * {@link AsyncSink} in the requested {@link OutputFormat}.
+ */
+public class MxAddressLookup {
+	private static final ThreadLocal<ResponseView> VIEWS = new ThreadLocal<ResponseView>() {
+		@Override
+		protected ResponseView initialValue() {
+			return new ResponseView();
+		}
+	};
+
+	private Options options;
+	private ShardedEngine engine;
+	private AsyncSink sink;
+	private Semaphore outstanding = new Semaphore(BulkLookup.MAX_OUTSTANDING);
+
+	private AtomicLong numOfDomains = new AtomicLong();
+	private AtomicLong numOfExchanges = new AtomicLong();
+	private AtomicLong numOfGlued = new AtomicLong();
+	private AtomicLong numOfFollowUps = new AtomicLong();
+
+	public MxAddressLookup(Options options) {
+		this.options = options;
+	}
+
+	/**
+	 * Resolves every domain and writes one entry per domain.
+	 * @throws IOException
+	 */
+	public void run() throws IOException {
+		PrintStream info = options.getOutputFormat() == OutputFormat.HUMAN ? System.out : System.err;
+		info.println("\nDnsClient sending MX and address requests for " + options.getName());
+		info.println("Server: " + options.getServer());
+		info.println("Request type: MX with addresses (" + options.getWorkers() + " workers)\n");
+
+		try {
+			engine = new ShardedEngine(options);
+		} catch (IllegalArgumentFormatException e) {
+			info.println("Error	Incorrect input syntax: " + e.getLocalizedMessage());
+			return;
+		}
+		sink = new AsyncSink(options.getOutputFormat().openMx(BulkLookup.standardOutput()));
+
+		long startTime = System.nanoTime();
+		try {
+			BulkLookup.forEachName(options, outstanding, new Consumer<String>() {
+				@Override
+				public void accept(String name) {
+					new Domain(name).start();
+				}
+			});
+			// Wait for every domain to complete
+			outstanding.acquireUninterruptibly(BulkLookup.MAX_OUTSTANDING);
+		} catch (IllegalArgumentFormatException e) {
+			info.println("Error	Incorrect input syntax: " + e.getLocalizedMessage());
+		} finally {
+			engine.close();
+			sink.close();
+		}
+
+		double seconds = (System.nanoTime() - startTime) / 1e9;
+		long queries = numOfDomains.get() + numOfFollowUps.get();
+		info.println("\n" + numOfDomains.get() + " domains in " + seconds + " seconds: "
+				+ numOfExchanges.get() + " exchanges, " + numOfGlued.get() + " addressed by glue, "
+				+ numOfFollowUps.get() + " follow-up A queries (" + queries + " queries in total)");
+	}
+
+	/**
+	 * The lookups of a single domain: its MX query, then the A queries of exchanges lacking glue.
+	 */
+	private class Domain implements LookupHandler {
+		private final String name;
+		private final List<MxResult.Exchange> exchanges = new ArrayList<MxResult.Exchange>(4);
+		private final AtomicInteger remaining = new AtomicInteger();
+		private LookupResult mx;
+		private String status;
+
+		private Domain(String name) {
+			this.name = name;
+		}
+
+		private void start() {
+			numOfDomains.incrementAndGet();
+			engine.submit(name, DNSCategory.MX, this);
+		}
+
+		/**
+		 * Handles the MX response.
+		 */
+		@Override
+		public void onResult(LookupResult result) {
+			mx = result;
+			status = result.getStatus();
+			if (result.getResponse() == null) {
+				finish();
+				return;
+			}
+
+			try {
+				decode(VIEWS.get().wrap(result.getResponse()));
+			} catch (IllegalStateException e) {
+				// Malformed response: report the domain without exchanges rather than lose it
+				status = "FORMERR";
+				exchanges.clear();
+				finish();
+				return;
+			}
+
+			List<MxResult.Exchange> missing = new ArrayList<MxResult.Exchange>();
+			for (MxResult.Exchange exchange : exchanges) {
+				if (exchange.glue) {
+					numOfGlued.incrementAndGet();
+				} else if (!exchange.host.isEmpty()) {
+					// An empty host is the null MX of RFC 7505: the domain accepts no mail
+					missing.add(exchange);
+				}
+			}
+			numOfExchanges.addAndGet(exchanges.size());
+			if (missing.isEmpty()) {
+				finish();
+				return;
+			}
+
+			remaining.set(missing.size());
+			numOfFollowUps.addAndGet(missing.size());
+			for (final MxResult.Exchange exchange : missing) {
+				engine.submit(exchange.host, DNSCategory.A, new LookupHandler() {
+					@Override
+					public void onResult(LookupResult result) {
+						addAddresses(exchange, result);
+					}
+				});
+			}
+		}
+
+		/**
+		 * Reads the exchanges of the MX response and the addresses given as glue. A malformed record is
+		 * skipped, so an exchange whose glue cannot be read falls back to an A query.
+		 * @param view - A view wrapping the MX response.
+		 */
+		private void decode(ResponseView view) {
+			int numOfAnswers = view.getCount(ResponseView.ANSWER);
+			int[] targets = new int[numOfAnswers];
+			for (int i = 0; i < numOfAnswers && view.has(i); i++) {
+				try {
+					if (view.getType(i) == ResponseView.TYPE_MX) {
+						MxResult.Exchange exchange = new MxResult.Exchange(view.getPreference(i), view.getTarget(i));
+						targets[exchanges.size()] = view.getTargetOffset(i);
+						exchanges.add(exchange);
+					}
+				} catch (IllegalStateException e) {
+					// Malformed exchange; the others still count
+				}
+			}
+
+			// Match glue by comparing names in place, without decoding the additional section
+			int first = view.getFirst(ResponseView.ADDITIONAL);
+			for (int j = first; view.has(j); j++) {
+				if (view.getType(j) != ResponseView.TYPE_A) {
+					continue;
+				}
+				try {
+					String address = null;
+					for (int i = 0; i < exchanges.size(); i++) {
+						if (view.nameEquals(targets[i], view.getNameOffset(j))) {
+							if (address == null) {
+								address = view.getIPv4(j);
+							}
+							exchanges.get(i).addresses.add(address);
+							exchanges.get(i).glue = true;
+						}
+					}
+				} catch (IllegalStateException e) {
+					// Malformed glue; an exchange left without any is looked up instead
+				}
+			}
+		}
+
+		/**
+		 * Handles the A response of an exchange that had no glue.
+		 */
+		private void addAddresses(MxResult.Exchange exchange, LookupResult result) {
+			try {
+				if (result.getResponse() != null) {
+					ResponseView view = VIEWS.get().wrap(result.getResponse());
+					List<String> addresses = new ArrayList<String>(2);
+					// CNAME chains end with the A records, so any A record in the answer belongs to the host
+					for (int i = 0; i < view.getCount(ResponseView.ANSWER) && view.has(i); i++) {
+						try {
+							if (view.getType(i) == ResponseView.TYPE_A) {
+								addresses.add(view.getIPv4(i));
+							}
+						} catch (IllegalStateException e) {
+							// Malformed address; keep the others
+						}
+					}
+					// Each exchange has a single follow-up, and the countdown below publishes it to finish()
+					exchange.addresses.addAll(addresses);
+				}
+			} catch (IllegalStateException e) {
+				// Response shorter than a header: the exchange is reported without addresses, as on a timeout
+			} finally {
+				if (remaining.decrementAndGet() == 0) {
+					finish();
+				}
+			}
+		}
+
+		/**
+		 * Queues the domain for writing once every lookup it needed has completed.
+		 */
+		private void finish() {
+			try {
+				sink.write(new MxResult(mx, status, exchanges));
+			} catch (IOException e) {
+				// Reported when the sink is closed
+			}
+			outstanding.release();
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package ecse489.helper.DNS;
+
+import java.io.OutputStream;
+
+/**
+ * CSV for {@link MxResult}: the columns of {@link CsvSink} describing the MX lookup, then one row per
+ * address of every exchange, or a single row with empty exchange columns when the domain has none.
+ */
+class MxCsvSink extends CsvSink {
+	private static final String HEADER = "name,type,status,rtt_ms,retries,cached,preference,exchange,address,source";
+
+	protected MxCsvSink(OutputStream out) {
+		super(out);
+	}
+
+	@Override
+	protected String header() {
+		return HEADER;
+	}
+
+	@Override
+	protected void render(LookupResult result) {
+		int rows = 0;
+		for (MxResult.Exchange exchange : ((MxResult) result).getExchanges()) {
+			// An exchange without addresses still gets its row
+			for (int i = 0; i < Math.max(1, exchange.addresses.size()); i++) {
+				if (rows != 0) {
+					line.append('\n');
+				}
+				appendLookup(result, result.getStatus());
+				line.append(exchange.preference).append(',');
+				appendQuoted(line, exchange.host);
+				line.append(',').append(i < exchange.addresses.size() ? exchange.addresses.get(i) : "");
+				line.append(',').append(exchange.glue ? "glue" : "lookup");
+				rows++;
+			}
+		}
+		if (rows == 0) {
+			appendLookup(result, result.getStatus());
+			line.append(",,,");
+		}
+	}
+
+	@Override
+	protected void renderMalformed(LookupResult result) {
+		appendLookup(result, "FORMERR");
+		line.append(",,,");
+	}
+}
@@ -0,0 +1,33 @@
+package ecse489.helper.DNS;
+
+import java.io.OutputStream;
+
+/**
+ * Tab separated lines for {@link MxResult}: the columns of {@link HumanSink} describing the MX lookup,
+ * then one line per exchange with its preference, host, addresses and where they came from.
+ */
+class MxHumanSink extends HumanSink {
+	protected MxHumanSink(OutputStream out) {
+		super(out);
+	}
+
+	@Override
+	protected void render(LookupResult result) {
+		boolean first = true;
+		for (MxResult.Exchange exchange : ((MxResult) result).getExchanges()) {
+			if (!first) {
+				line.append('\n');
+			}
+			appendLookup(result, result.getStatus());
+			line.append('\t').append(exchange.preference).append('\t').append(exchange.host).append('\t');
+			for (int i = 0; i < exchange.addresses.size(); i++) {
+				line.append(i == 0 ? "" : ",").append(exchange.addresses.get(i));
+			}
+			line.append('\t').append(exchange.glue ? "glue" : "lookup");
+			first = false;
+		}
+		if (first) {
+			appendLookup(result, result.getStatus());
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package ecse489.helper.DNS;
+
+import java.io.OutputStream;
+
+/**
+ * JSON Lines for {@link MxResult}: the fields of {@link JsonLinesSink} describing the MX lookup, then
+ * the exchanges sorted by preference.
+ *
+ * {"name":"mcgill.ca","type":"MX","status":"NOERROR","rtt_ms":12.345,"retries":0,"cached":false,
+ *  "exchanges":[{"preference":10,"host":"mx.mcgill.ca","glue":true,"addresses":["132.206.1.1"]}]}
+ */
+class MxJsonLinesSink extends JsonLinesSink {
+	protected MxJsonLinesSink(OutputStream out) {
+		super(out);
+	}
+
+	@Override
+	protected void render(LookupResult result) {
+		appendLookup(result, result.getStatus());
+		line.append(",\"exchanges\":[");
+		boolean first = true;
+		for (MxResult.Exchange exchange : ((MxResult) result).getExchanges()) {
+			line.append(first ? "" : ",").append("{\"preference\":").append(exchange.preference);
+			line.append(",\"host\":");
+			appendString(line, exchange.host);
+			line.append(",\"glue\":").append(exchange.glue).append(",\"addresses\":[");
+			for (int i = 0; i < exchange.addresses.size(); i++) {
+				if (i != 0) {
+					line.append(',');
+				}
+				appendString(line, exchange.addresses.get(i));
+			}
+			line.append("]}");
+			first = false;
+		}
+		line.append("]}");
+	}
+}
@@ -0,0 +1,63 @@
+package ecse489.helper.DNS;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The MX lookup of a domain together with the addresses found for its exchanges, as written by the
+ * mail exchange sinks. Exchanges are sorted by preference.
+ */
+class MxResult extends LookupResult {
+	private final String status;
+	private final List<Exchange> exchanges;
+
+	/**
+	 * Package constructor. Sorts the exchanges.
+	 * @param mx The MX lookup of the domain
+	 * @param status The status to report, FORMERR if the MX response could not be decoded
+	 * @param exchanges Every exchange of the domain, with their addresses
+	 */
+	protected MxResult(LookupResult mx, String status, List<Exchange> exchanges) {
+		super(mx.getName(), mx.getDNS(), mx.getResponse(), mx.getTries(), mx.getElapsedNanos(), mx.isCached());
+		this.status = status;
+		this.exchanges = exchanges;
+		Collections.sort(exchanges, BY_PREFERENCE);
+	}
+
+	@Override
+	public String getStatus() {
+		return status;
+	}
+
+	protected List<Exchange> getExchanges() {
+		return exchanges;
+	}
+
+	/**
+	 * A mail exchange and the addresses found for it.
+	 */
+	protected static class Exchange {
+		protected final int preference;
+		protected final String host;
+		protected final List<String> addresses = new ArrayList<String>(2);
+		// True if the addresses came from the additional section rather than an A query
+		protected boolean glue = false;
+
+		protected Exchange(int preference, String host) {
+			this.preference = preference;
+			this.host = host;
+		}
+	}
+
+	private static final Comparator<Exchange> BY_PREFERENCE = new Comparator<Exchange>() {
+		@Override
+		public int compare(Exchange a, Exchange b) {
+			if (a.preference != b.preference) {
+				return a.preference < b.preference ? -1 : 1;
+			}
+			return a.host.compareToIgnoreCase(b.host);
+		}
+	};
+}
@@ -0,0 +1,48 @@
+package ecse489.helper.DNS;
+
+import java.io.OutputStream;
+
+/**
+ * Formats in which bulk lookup results can be written.
+ */
+public enum OutputFormat {
+	HUMAN,
+	JSON,
+	CSV,
+	BINARY;
+
+	/**
+	 * Creates a sink writing results in this format.
+	 * @param out Stream receiving the results
+	 * @return A single threaded sink; wrap it in an {@link AsyncSink} to write from several threads.
+	 */
+	public ResultSink open(OutputStream out) {
+		switch (this) {
+			case JSON:
+				return new JsonLinesSink(out);
+			case CSV:
+				return new CsvSink(out);
+			case BINARY:
+				return new BinarySink(out);
+			default:
+				return new HumanSink(out);
+		}
+	}
+
+	/**
+	 * Creates a sink writing the {@link MxResult} of the combined MX and address mode in this format.
+	 * Binary has no layout for exchanges; the parser rejects it for that mode.
+	 * @param out Stream receiving the results
+	 * @return A single threaded sink; wrap it in an {@link AsyncSink} to write from several threads.
+	 */
+	public ResultSink openMx(OutputStream out) {
+		switch (this) {
+			case JSON:
+				return new MxJsonLinesSink(out);
+			case CSV:
+				return new MxCsvSink(out);
+			default:
+				return new MxHumanSink(out);
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package ecse489.helper.DNS;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Book-keeping for a lookup owned by a single {@link Shard}. Only ever touched by the shard's thread
+ * once it has been taken off the inbox.
+ */
+class PendingLookup {
+	protected final String name;
+	protected final DNSCategory dns;
+	protected final LookupHandler handler;
+	protected final long submitted;
+
+	protected int id = -1;
+	protected byte[] query;
+	protected int tries = 0;
+	protected int sends = 0;
+	protected long sentAt;
+	// Address family of the last send, and when the query was raced to the other family (0 if not)
+	protected int family;
+	protected long racedAt;
+	protected boolean done = false;
+
+	// Cache key, and identical lookups submitted while this one was in flight
+	protected String key;
+	protected List<PendingLookup> followers;
+
+	protected PendingLookup(String name, DNSCategory dns, LookupHandler handler, long submitted) {
+		this.name = name;
+		this.dns = dns;
+		this.handler = handler;
+		this.submitted = submitted;
+	}
+
+	protected void follow(PendingLookup follower) {
+		if (followers == null) {
+			followers = new ArrayList<PendingLookup>(2);
+		}
+		followers.add(follower);
+	}
+}
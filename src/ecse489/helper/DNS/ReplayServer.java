@@ -0,0 +1,161 @@
+package ecse489.helper.DNS;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A local DNS server answering queries with the responses recorded in a capture, each after the delay
+ * it originally took. Queries are matched on their bytes, transaction ID aside, and the response takes
+ * the ID of the query it answers. A query captured several times is answered with its recorded
+ * responses in turn, the last one repeating; sends that went unanswered are not answered, so a retried
+ * query is answered on the same send as when it was captured.
+ */
+public class ReplayServer {
+	// Captures of bulk runs arrive in bursts larger than the default socket buffer
+	private static final int BUFFER_SIZE = 1 << 22;
+
+	private Map<ByteBuffer, ArrayDeque<Reply>> replies = new HashMap<ByteBuffer, ArrayDeque<Reply>>();
+	private DatagramChannel channel;
+	private ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+	private Thread thread;
+	private int port;
+
+	/**
+	 * A recorded response and its delay, or a send left unanswered when the response is null.
+	 */
+	private static class Reply {
+		private final byte[] response;
+		private final long delay;
+
+		private Reply(byte[] response, long delay) {
+			this.response = response;
+			this.delay = delay;
+		}
+	}
+
+	/**
+	 * Public constructor. Binds to an ephemeral port on the loopback interface.
+	 * @throws IOException
+	 */
+	public ReplayServer() throws IOException {
+		this.channel = DatagramChannel.open();
+		this.channel.setOption(StandardSocketOptions.SO_RCVBUF, BUFFER_SIZE);
+		this.channel.setOption(StandardSocketOptions.SO_SNDBUF, BUFFER_SIZE);
+		this.channel.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+		this.port = ((InetSocketAddress) channel.getLocalAddress()).getPort();
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * Adds a recorded pair. Must be called before {@link #start()}.
+	 * @param query An array of bytes holding the query as captured.
+	 * @param response An array of bytes holding its response, null if none was received.
+	 * @param delay Delay until the response in microseconds.
+	 */
+	public void add(byte[] query, byte[] response, long delay) {
+		if (query.length < Message.HEADER_LENGTH || response != null && response.length < Message.HEADER_LENGTH) {
+			return;
+		}
+		ByteBuffer key = key(query, query.length);
+		ArrayDeque<Reply> queue = replies.get(key);
+		if (queue == null) {
+			queue = new ArrayDeque<Reply>(1);
+			replies.put(key, queue);
+		}
+		queue.add(new Reply(response, delay));
+	}
+
+	/**
+	 * Starts answering queries.
+	 */
+	public void start() {
+		thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				serve();
+			}
+		}, "dns-replay");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops answering queries and releases the socket.
+	 */
+	public void close() {
+		scheduler.shutdownNow();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// Already closed
+		}
+	}
+
+	/**
+	 * Answers queries until the socket is closed.
+	 */
+	private void serve() {
+		ByteBuffer incoming = ByteBuffer.allocate(512);
+		try {
+			while (true) {
+				incoming.clear();
+				final SocketAddress client = channel.receive(incoming);
+				if (incoming.position() < Message.HEADER_LENGTH) {
+					continue;
+				}
+				ArrayDeque<Reply> queue = replies.get(key(incoming.array(), incoming.position()));
+				if (queue == null) {
+					continue;
+				}
+				Reply reply = queue.size() > 1 ? queue.poll() : queue.peek();
+				if (reply.response == null) {
+					continue;
+				}
+
+				// Answer with the ID of this query
+				final byte[] response = Arrays.copyOf(reply.response, reply.response.length);
+				response[0x00] = incoming.get(0x00);
+				response[0x01] = incoming.get(0x01);
+				scheduler.schedule(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							channel.send(ByteBuffer.wrap(response), client);
+						} catch (IOException e) {
+							// Server closed
+						}
+					}
+				}, reply.delay, TimeUnit.MICROSECONDS);
+			}
+		} catch (ClosedChannelException e) {
+			// Server closed
+		} catch (IOException e) {
+			System.out.println("ERROR	Replay server stopped: " + e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * @return The query without its transaction ID, as a map key.
+	 */
+	private static ByteBuffer key(byte[] query, int length) {
+		byte[] key = Arrays.copyOf(query, length);
+		key[0x00] = 0x00;
+		key[0x01] = 0x00;
+		return ByteBuffer.wrap(key);
+	}
+}
@@ -8,10 +8,9 @@ import ecse489.helper.DNS.DNSCategory;
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
-import java.net.InetAddress;
 import java.net.SocketTimeoutException;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 public class Request {
 	private DatagramSocket socket;
@@ -22,6 +21,8 @@ public class Request {
 	private DNSCategory dns;
 	private int retries;
 	private int timeout;
+	private String capture;
+	private String zone;
 
 	private static final byte ID_0 = (byte) 0xEE;
 	private static final byte ID_1 = (byte) 0xCE;
@@ -31,85 +32,26 @@ public class Request {
 	public Request(Options options) {
 		this.server = options.getServer();
 		this.name = options.getName();
+		if (options.getDNS() == DNSCategory.PTR) {
+			// Reverse lookups accept a plain IPv4 or IPv6 address
+			this.name = ReverseNames.toReverseName(this.name);
+		}
 		this.port = options.getPort();
 		this.dns = options.getDNS();
 		this.timeout = options.getTimeout();
 		this.retries = options.getRetries();
+		this.capture = options.getCapture();
+		this.zone = options.getZone();
 	}
 
 	/**
 	 * Builds the buffer based the type of DNS request
 	 * @return An array of bytes.
+	 * @throws IllegalArgumentFormatException If the name is too long to be queried.
 	 */
-	private byte[] buildBuffer() {
-		ArrayList<Byte> buffer = new ArrayList<Byte>();
-		
+	private byte[] buildBuffer() throws IllegalArgumentFormatException {
 		// Unique identifier 0xEECE for our DNS
-		buffer.add(new Byte(ID_0));
-		buffer.add(new Byte(ID_1));
-
-		// QR: 0		(DNS Request)
-		// Opcode: 0000 (Standard query)
-		// AA: 0		(Authoritative response - reserved for response)
-		// TC: 0		(Truncated response - reserved for response)
-		// RD: 1		(Recursion desired)
-		buffer.add(new Byte((byte) 0x01));
-
-		// RA: 0		(Recursion supported - reserved for response)
-		// Z: 000		(Reserved for future use)
-		// Rcode: 0000	(Response code - reserved for response)
-		buffer.add(new Byte((byte) 0x00));
-
-		// QDCOUNT: 0x0001	(One question follows) 
-		buffer.add(new Byte((byte) 0x00));
-		buffer.add(new Byte((byte) 0x01));
-
-		// ANCOUNT: 0x0000	(No answer follows)
-		buffer.add(new Byte((byte) 0x00));
-		buffer.add(new Byte((byte) 0x00));
-
-		// NSCOUNT: 0x0000	(No records follows)
-		buffer.add(new Byte((byte) 0x00));
-		buffer.add(new Byte((byte) 0x00));
-
-		// ARCOUNT: 0x0000 	(No additional records follows)
-		buffer.add(new Byte((byte) 0x00));
-		buffer.add(new Byte((byte) 0x00));
-
-		// Begin building name to buffer. Split string apart using regex on any appearance of "."
-		String[] nameInStringArr = this.name.split("[.]");
-		for (int i = 0; i < nameInStringArr.length; i++) {
-			// Add size of every string and their representation in bytes
-			buffer.add(new Byte((byte) nameInStringArr[i].length()));
-			for (int j = 0; j < nameInStringArr[i].length(); j++) {
-				buffer.add(new Byte((byte) nameInStringArr[i].charAt(j)));
-			}
-		}
-
-		// Indicates end of name
-		buffer.add(new Byte((byte) 0x00));
-
-		// QTYPE: 0x0001	(A Query)
-		// QTYPE: 0x0002	(NS Query)
-		// QTYPE: 0x000f	(MX Query)
-		buffer.add(new Byte((byte) 0x00));
-		switch(dns) {
-			case A:
-				buffer.add(new Byte((byte) 0x01));
-				break;
-			case NS:
-				buffer.add(new Byte((byte) 0x02));
-				break;
-			case MX:
-				buffer.add(new Byte((byte) 0x0F));
-				break;
-		}
-
-		// QCLASS: 0x0001	(Internet address)
-		buffer.add(new Byte((byte) 0x00));
-		buffer.add(new Byte((byte) 0x01));
-
-		return Converter.convertByteArrToPrimitiveArr(buffer.toArray(new Byte[buffer.size()]));
+		return Message.buildQuery(((ID_0 << 8) & 0x0000FF00) | (ID_1 & 0x000000FF), this.name, this.dns);
 	}
 
 	/**
@@ -254,6 +196,20 @@ public class Request {
 		return ip;
 	}
 
+	/**
+	 * Returns the text form of an IPv4 or IPv6 address.
+	 * @param address - An array of 4 or 16 bytes.
+	 * @return A String representing the address.
+	 */
+	private String toText(byte[] address) {
+		if (address.length == 4) {
+			return parseIPv4(address, 0);
+		}
+		StringBuilder ip = new StringBuilder();
+		Converter.appendIPv6(address, 0, ip);
+		return ip.toString();
+	}
+
 	/**
 	 * Obtains a response from a DNS server using UDP Sockets.
 	 * @throws IOException
@@ -267,31 +223,61 @@ public class Request {
 				case A: System.out.println("Request type: A\n"); break;
 				case MX: System.out.println("Request type: MX\n"); break;
 				case NS: System.out.println("Request type: NS\n"); break;
+				case PTR: System.out.println("Request type: PTR\n"); break;
+				case AAAA: System.out.println("Request type: AAAA\n"); break;
 			}
 			
+			// Names of the local zone never go to the wire
+			if (this.zone != null) {
+				byte[] local = new LocalZone(this.zone).answer(((ID_0 << 8) & 0x0000FF00) | (ID_1 & 0x000000FF),
+						this.name, this.dns);
+				if (local != null) {
+					System.out.println("Response answered locally from " + this.zone);
+					parseAndPrintResponse(local);
+					return;
+				}
+			}
+
 			byte[] outgoingBuffer = buildBuffer();
 			// Since DNS response have an unknown length, use 1500 which is the maximum UDP packet size as limited
 			// by IP protocol
 			byte[] incomingBuffer = new byte[1500];
 
-			// Converts IPv4 address String into a byte array of size 4
-			byte[] serverInByteArr = Converter.convertIPv4StringToByteArray(this.server);
+			// Converts the IPv4 or IPv6 address String, or one of each for a dual-stack server
+			Upstream upstream = new Upstream(this.server, this.port);
+			int family = upstream.preferred();
 
 			// Establish a new anonymous DatagramSocket for Client side (us)
 			this.socket = new DatagramSocket();
 
 			// Set timeout in milliseconds
-			this.socket.setSoTimeout(this.timeout * 1000);
+			// With both address families, the preferred one only gets a head start before the other is
+			// raced in (Happy Eyeballs)
+			boolean racing = upstream.isDualStack();
+			this.socket.setSoTimeout(racing ? (int) TimeUnit.NANOSECONDS.toMillis(upstream.raceDelay())
+					: this.timeout * 1000);
 
 			// Start a timer
 			long startTime = System.currentTimeMillis();
+			long sentAt = System.nanoTime();
+			long receivedAt = 0;
 
 			// Create a new UDP packet and send it to Server:Port
 			DatagramPacket outgoingPacket = new DatagramPacket(outgoingBuffer, 
 					   								   		   outgoingBuffer.length,
-					   								   		   InetAddress.getByAddress(serverInByteArr), 
-					   								   		   port);
-			this.socket.send(outgoingPacket);
+					   								   		   upstream.get(family));
+			try {
+				this.socket.send(outgoingPacket);
+			} catch (IOException e) {
+				if (!racing) {
+					throw e;
+				}
+				// No route to the server in this family: use the other one straight away
+				racing = false;
+				outgoingPacket.setSocketAddress(upstream.get(1 - family));
+				this.socket.setSoTimeout(this.timeout * 1000);
+				this.socket.send(outgoingPacket);
+			}
 
 			// Create a new UDP packet to receive it from the server
 			// Try to receive from the server
@@ -299,16 +285,38 @@ public class Request {
 			while(this.tries <= this.retries) {
 				try {
 					this.socket.receive(incomingPacket);
+					receivedAt = System.nanoTime();
 					System.out.println("Response received after " + ((System.currentTimeMillis() - startTime) / 1000.0) 
-							+ " seconds (" + this.tries + " retries)");
+							+ " seconds (" + this.tries + " retries)"
+							+ (upstream.isDualStack() ? " from " + toText(incomingPacket.getAddress().getAddress()) : ""));
 					break;
 				} catch (SocketTimeoutException e) {
+					if (racing) {
+						// The preferred family is slow or broken: send to the other one as well
+						racing = false;
+						this.socket.setSoTimeout(this.timeout * 1000);
+						outgoingPacket.setSocketAddress(upstream.get(1 - family));
+						try {
+							this.socket.send(outgoingPacket);
+						} catch (IOException raceFailure) {
+							// No route to the server in that family: keep waiting on the first one
+						}
+						continue;
+					}
 					System.out.println("ERROR	No response received after " + this.timeout + " seconds: retry " 
 							+ this.tries + " out of " + this.retries);
 					this.tries++;
 				}
 			}
 
+			// Record the exchange before parsing it, so responses the parser trips over are kept too
+			if (this.capture != null) {
+				CaptureWriter writer = new CaptureWriter(this.capture);
+				writer.record(outgoingBuffer, this.tries > this.retries ? null : incomingBuffer,
+						incomingPacket.getLength(), sentAt, receivedAt);
+				writer.close();
+			}
+
 			// Number of tries exceed the maximum allowed number of retries
 			// Exit method
 			if (this.tries > this.retries) {
@@ -450,6 +458,11 @@ public class Request {
 					if ((byte) responseType == 0x01) {
 						System.out.print("IP	" + parseIPv4(response, parserPointer) + "	" + responseTTL +  "	");
 					}
+					else if ((byte) responseType == 0x1C) {
+						StringBuilder ip = new StringBuilder(39);
+						Converter.appendIPv6(response, parserPointer, ip);
+						System.out.print("IP	" + ip + "	" + responseTTL + "	");
+					}
 					else if ((byte) responseType == 0x02) {
 						String nsRecord = parseInfo(response, parserPointer, length);
 						System.out.print("NS	" + stripeExtraDot(nsRecord) + "	" + responseTTL + "	");
@@ -464,6 +477,10 @@ public class Request {
 						parserPointer += length;
 						continue;
 					}
+					else if ((byte) responseType == 0x0C) {
+						String ptrRecord = parseInfo(response, parserPointer, length);
+						System.out.print("PTR	" + stripeExtraDot(ptrRecord) + "	" + responseTTL + "	");
+					}
 					else if ((byte) responseType == 0x0F) {
 						int preference = ((response[parserPointer] << 8) & 0x0000FF00) | (response[parserPointer + 1] & 0x000000FF);
 						String mxRecord = parseInfo(response, parserPointer + 2, length - 2);
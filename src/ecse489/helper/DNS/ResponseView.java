@@ -0,0 +1,548 @@
+package ecse489.helper.DNS;
+
+/**
+ * A reusable read-only view over a DNS response. Wrapping a buffer only reads the header; record
+ * offsets are indexed lazily, as far as the records asked for, and names and data are decoded only when
+ * an accessor asks for them. Records are addressed by index in order of appearance (answers, then
+ * authority, then additional), so iterating a section allocates nothing.
+ *
+ * Malformed data surfaces as an {@link IllegalStateException} from whichever accessor trips over it: a
+ * response shorter than a header, a record cut short, data of the wrong length for its type, or a name
+ * that runs past the response or loops. Callers decoding responses from the network catch that one type.
+ *
+ * Not thread safe: use one view per thread and wrap every new response into it.
+ */
+public class ResponseView {
+	public static final int ANSWER = 0;
+	public static final int AUTHORITY = 1;
+	public static final int ADDITIONAL = 2;
+
+	public static final int TYPE_A = 0x01;
+	public static final int TYPE_NS = 0x02;
+	public static final int TYPE_CNAME = 0x05;
+	public static final int TYPE_SOA = 0x06;
+	public static final int TYPE_PTR = 0x0C;
+	public static final int TYPE_MX = 0x0F;
+	public static final int TYPE_AAAA = 0x1C;
+
+	// Guards against compression pointer loops in malformed responses
+	private static final int MAX_POINTERS = 64;
+
+	private byte[] response;
+	private int length;
+	private int[] counts = new int[3];
+	private int numOfRecords;
+
+	// Offsets of the owner name and of the data of every record indexed so far
+	private int[] nameOffsets = new int[16];
+	private int[] dataOffsets = new int[16];
+	private int numOfIndexed;
+	private int nextOffset;
+	private boolean malformed;
+
+	/**
+	 * Points the view at a new response, forgetting the previous one.
+	 * @param response An array of bytes holding a DNS response.
+	 * @param length Number of valid bytes in the array.
+	 * @return This view.
+	 * @throws IllegalStateException If the response is shorter than a header.
+	 */
+	public ResponseView wrap(byte[] response, int length) {
+		if (length > response.length) {
+			throw new IllegalArgumentException("Length past the end of the array.");
+		}
+		if (length < Message.HEADER_LENGTH) {
+			throw new IllegalStateException("Response shorter than a DNS header.");
+		}
+		this.response = response;
+		this.length = length;
+		this.counts[ANSWER] = Message.readShort(response, 0x06);
+		this.counts[AUTHORITY] = Message.readShort(response, 0x08);
+		this.counts[ADDITIONAL] = Message.readShort(response, 0x0A);
+		this.numOfRecords = counts[ANSWER] + counts[AUTHORITY] + counts[ADDITIONAL];
+		this.numOfIndexed = 0;
+		this.malformed = false;
+
+		// Skip the question section
+		this.nextOffset = Message.HEADER_LENGTH;
+		int numOfQuestions = Message.readShort(response, 0x04);
+		for (int i = 0; i < numOfQuestions && !malformed; i++) {
+			int end = skipName(nextOffset);
+			if (end < 0 || end + 4 > length) {
+				malformed = true;
+			} else {
+				nextOffset = end + 4;
+			}
+		}
+		return this;
+	}
+
+	public ResponseView wrap(byte[] response) {
+		return wrap(response, response.length);
+	}
+
+	public byte[] getBuffer() {
+		return response;
+	}
+
+	public int getId() {
+		return Message.getId(response);
+	}
+
+	public int getRcode() {
+		return Message.getRcode(response);
+	}
+
+	public boolean isResponse() {
+		return Message.isResponse(response);
+	}
+
+	public boolean isAuthoritative() {
+		return (response[0x02] & 0x04) == 0x04;
+	}
+
+	public boolean isTruncated() {
+		return (response[0x02] & 0x02) == 0x02;
+	}
+
+	public boolean isRecursionAvailable() {
+		return (response[0x03] & 0x80) == 0x80;
+	}
+
+	/**
+	 * @param section ANSWER, AUTHORITY or ADDITIONAL.
+	 * @return The number of records the header announces for a section.
+	 */
+	public int getCount(int section) {
+		return counts[section];
+	}
+
+	/**
+	 * @param section ANSWER, AUTHORITY or ADDITIONAL.
+	 * @return The index of the first record of a section.
+	 */
+	public int getFirst(int section) {
+		int first = 0;
+		for (int i = 0; i < section; i++) {
+			first += counts[i];
+		}
+		return first;
+	}
+
+	/**
+	 * @param index Index of a record.
+	 * @return ANSWER, AUTHORITY or ADDITIONAL.
+	 */
+	public int getSection(int index) {
+		if (index < counts[ANSWER]) {
+			return ANSWER;
+		}
+		return index < counts[ANSWER] + counts[AUTHORITY] ? AUTHORITY : ADDITIONAL;
+	}
+
+	/**
+	 * @return The number of records announced by the header.
+	 */
+	public int getRecordCount() {
+		return numOfRecords;
+	}
+
+	/**
+	 * Indexes records up to and including the one asked for.
+	 * @param index Index of a record.
+	 * @return True if the record exists and lies entirely within the response, false if the response is
+	 * truncated or malformed before it.
+	 */
+	public boolean has(int index) {
+		if (index < 0 || index >= numOfRecords) {
+			return false;
+		}
+		while (numOfIndexed <= index && !malformed) {
+			int dataOffset = skipName(nextOffset);
+			if (dataOffset < 0 || dataOffset + 10 > length) {
+				malformed = true;
+				break;
+			}
+			dataOffset += 10;
+			int end = dataOffset + Message.readShort(response, dataOffset - 2);
+			if (end > length) {
+				malformed = true;
+				break;
+			}
+			if (numOfIndexed == nameOffsets.length) {
+				nameOffsets = grow(nameOffsets);
+				dataOffsets = grow(dataOffsets);
+			}
+			nameOffsets[numOfIndexed] = nextOffset;
+			dataOffsets[numOfIndexed] = dataOffset;
+			numOfIndexed++;
+			nextOffset = end;
+		}
+		return index < numOfIndexed;
+	}
+
+	/**
+	 * @return True if a record announced by the header could not be indexed. Only meaningful once
+	 * {@link #has(int)} has been called for the last record.
+	 */
+	public boolean isMalformed() {
+		return malformed;
+	}
+
+	public int getType(int index) {
+		return Message.readShort(response, dataOffset(index) - 10);
+	}
+
+	public int getClassCode(int index) {
+		return Message.readShort(response, dataOffset(index) - 8);
+	}
+
+	public int getTtl(int index) {
+		return Message.readInt(response, dataOffset(index) - 6);
+	}
+
+	public int getDataLength(int index) {
+		return Message.readShort(response, dataOffset(index) - 2);
+	}
+
+	/**
+	 * @param index Index of a record.
+	 * @return Offset in the buffer of the record data.
+	 */
+	public int getDataOffset(int index) {
+		return dataOffset(index);
+	}
+
+	/**
+	 * @param index Index of a record.
+	 * @return Offset in the buffer of the record's owner name.
+	 */
+	public int getNameOffset(int index) {
+		dataOffset(index);
+		return nameOffsets[index];
+	}
+
+	/**
+	 * @param index Index of a record.
+	 * @return The decoded owner name, without a trailing dot.
+	 */
+	public String getName(int index) {
+		return decodeName(getNameOffset(index));
+	}
+
+	/**
+	 * @param index Index of an A record.
+	 * @return The address as an integer in network order.
+	 */
+	public int getIPv4Address(int index) {
+		return Message.readInt(response, dataOffset(index, 4, 4));
+	}
+
+	/**
+	 * @param index Index of an A record.
+	 * @return A String representing an IPv4 address.
+	 */
+	public String getIPv4(int index) {
+		int offset = dataOffset(index, 4, 4);
+		StringBuilder ip = new StringBuilder(15);
+		for (int i = 0; i < 4; i++) {
+			if (i != 0) {
+				ip.append('.');
+			}
+			ip.append(response[offset + i] & 0xFF);
+		}
+		return ip.toString();
+	}
+
+	/**
+	 * @param index Index of an AAAA record.
+	 * @return A String representing an IPv6 address in its canonical form.
+	 */
+	public String getIPv6(int index) {
+		StringBuilder ip = new StringBuilder(39);
+		Converter.appendIPv6(response, dataOffset(index, 16, 16), ip);
+		return ip.toString();
+	}
+
+	/**
+	 * @param index Index of an MX record.
+	 * @return The preference of the exchange.
+	 */
+	public int getPreference(int index) {
+		return Message.readShort(response, dataOffset(index, 3, 0xFFFF));
+	}
+
+	/**
+	 * @param index Index of an NS, CNAME, PTR, MX or SOA record.
+	 * @return Offset in the buffer of the name the record points to (the exchange for MX, the primary
+	 * name server for SOA).
+	 */
+	public int getTargetOffset(int index) {
+		// At least the root label, after the preference for MX
+		if (getType(index) == TYPE_MX) {
+			return dataOffset(index, 3, 0xFFFF) + 2;
+		}
+		return dataOffset(index, 1, 0xFFFF);
+	}
+
+	/**
+	 * @param index Index of an NS, CNAME, PTR, MX or SOA record.
+	 * @return The decoded name the record points to, without a trailing dot.
+	 */
+	public String getTarget(int index) {
+		return decodeName(getTargetOffset(index));
+	}
+
+	/**
+	 * Renders the data of a record the way it is printed: the address of A and AAAA records, the name pointed
+	 * to by NS, CNAME, PTR, MX and SOA records, and the generic \\# length hex form for any other type.
+	 * @param index Index of a record.
+	 * @param out Receives the data.
+	 */
+	public void appendData(int index, StringBuilder out) {
+		int offset = dataOffset(index);
+		switch (getType(index)) {
+			case TYPE_A:
+				dataOffset(index, 4, 4);
+				for (int i = 0; i < 4; i++) {
+					if (i != 0) {
+						out.append('.');
+					}
+					out.append(response[offset + i] & 0xFF);
+				}
+				break;
+			case TYPE_AAAA:
+				Converter.appendIPv6(response, dataOffset(index, 16, 16), out);
+				break;
+			case TYPE_NS:
+			case TYPE_CNAME:
+			case TYPE_PTR:
+			case TYPE_MX:
+			case TYPE_SOA:
+				appendName(getTargetOffset(index), out);
+				break;
+			default:
+				int dataLength = getDataLength(index);
+				out.append("\\# ").append(dataLength).append(' ');
+				for (int i = offset; i < offset + dataLength; i++) {
+					out.append(Character.forDigit((response[i] >> 4) & 0x0F, 16));
+					out.append(Character.forDigit(response[i] & 0x0F, 16));
+				}
+		}
+	}
+
+	/**
+	 * @param type A record type code.
+	 * @return The mnemonic of the type, such as A or MX, or TYPE followed by the code.
+	 */
+	public static String typeToString(int type) {
+		switch (type) {
+			case TYPE_A: return "A";
+			case TYPE_NS: return "NS";
+			case TYPE_CNAME: return "CNAME";
+			case TYPE_SOA: return "SOA";
+			case TYPE_PTR: return "PTR";
+			case TYPE_MX: return "MX";
+			case TYPE_AAAA: return "AAAA";
+			default: return "TYPE" + type;
+		}
+	}
+
+	/**
+	 * Decodes a possibly compressed name.
+	 * @param offset Offset in the buffer of the first length byte of the name.
+	 * @return The name without a trailing dot; the root is an empty String.
+	 */
+	public String decodeName(int offset) {
+		StringBuilder name = new StringBuilder(32);
+		appendName(offset, name);
+		return name.toString();
+	}
+
+	/**
+	 * Decodes a possibly compressed name into a builder.
+	 * @param offset Offset in the buffer of the first length byte of the name.
+	 * @param out Receives the name without a trailing dot.
+	 * @throws IllegalStateException If the name runs past the response or loops.
+	 */
+	public void appendName(int offset, StringBuilder out) {
+		int pointers = 0;
+		boolean first = true;
+		while (true) {
+			if (offset >= length) {
+				throw new IllegalStateException("Name runs past the end of the response.");
+			}
+			int label = response[offset] & 0xFF;
+			if (label == 0x00) {
+				return;
+			}
+			if ((label & 0xC0) == 0xC0) {
+				if (offset + 1 >= length || ++pointers > MAX_POINTERS) {
+					throw new IllegalStateException("Invalid compression pointer.");
+				}
+				offset = ((label & 0x3F) << 8) | (response[offset + 1] & 0xFF);
+				continue;
+			}
+			if (offset + 1 + label > length) {
+				throw new IllegalStateException("Name runs past the end of the response.");
+			}
+			if (!first) {
+				out.append('.');
+			}
+			first = false;
+			for (int i = offset + 1; i <= offset + label; i++) {
+				out.append((char) (response[i] & 0xFF));
+			}
+			offset += label + 1;
+		}
+	}
+
+	/**
+	 * Compares two names in the buffer, ignoring case, without decoding them.
+	 * @param a Offset of the first name.
+	 * @param b Offset of the second name.
+	 * @return True if both names are equal.
+	 */
+	public boolean nameEquals(int a, int b) {
+		int pointers = 0;
+		while (true) {
+			a = followPointers(a);
+			b = followPointers(b);
+			if (a < 0 || b < 0 || ++pointers > MAX_POINTERS * 4) {
+				return false;
+			}
+			if (a == b) {
+				return true;
+			}
+			int label = response[a] & 0xFF;
+			if (label != (response[b] & 0xFF) || a + label >= length || b + label >= length) {
+				return false;
+			}
+			if (label == 0x00) {
+				return true;
+			}
+			for (int i = 1; i <= label; i++) {
+				if (lower(response[a + i]) != lower(response[b + i])) {
+					return false;
+				}
+			}
+			a += label + 1;
+			b += label + 1;
+		}
+	}
+
+	/**
+	 * Compares a name in the buffer with a String, ignoring case and a trailing dot, without decoding it.
+	 * @param offset Offset of the name in the buffer.
+	 * @param name A String representing a domain name.
+	 * @return True if both names are equal.
+	 */
+	public boolean nameEquals(int offset, String name) {
+		int position = 0;
+		int end = name.endsWith(".") ? name.length() - 1 : name.length();
+		int pointers = 0;
+		while (true) {
+			offset = followPointers(offset);
+			if (offset < 0 || ++pointers > MAX_POINTERS * 4) {
+				return false;
+			}
+			int label = response[offset] & 0xFF;
+			if (label == 0x00) {
+				return position >= end;
+			}
+			if (offset + label >= length) {
+				return false;
+			}
+			if (position != 0) {
+				if (position >= end || name.charAt(position) != '.') {
+					return false;
+				}
+				position++;
+			}
+			if (position + label > end) {
+				return false;
+			}
+			for (int i = 1; i <= label; i++) {
+				if (lower(response[offset + i]) != lower((byte) name.charAt(position++))) {
+					return false;
+				}
+			}
+			offset += label + 1;
+		}
+	}
+
+	/**
+	 * @throws IndexOutOfBoundsException If the header announces no such record.
+	 * @throws IllegalStateException If the record is cut short or malformed.
+	 */
+	private int dataOffset(int index) {
+		if (index < 0 || index >= numOfRecords) {
+			throw new IndexOutOfBoundsException("Record " + index + " is not announced by the header.");
+		}
+		if (!has(index)) {
+			throw new IllegalStateException("Record " + index + " is cut short or malformed.");
+		}
+		return dataOffsets[index];
+	}
+
+	/**
+	 * Checks the length of a record's data against what its type requires before it is read.
+	 * @throws IllegalStateException If the data is shorter or longer than allowed.
+	 */
+	private int dataOffset(int index, int minLength, int maxLength) {
+		int offset = dataOffset(index);
+		int dataLength = getDataLength(index);
+		if (dataLength < minLength || dataLength > maxLength) {
+			throw new IllegalStateException("Record " + index + " has " + dataLength + " bytes of "
+					+ typeToString(getType(index)) + " data.");
+		}
+		return offset;
+	}
+
+	/**
+	 * @return The offset following a name, or -1 if the name runs past the response.
+	 */
+	private int skipName(int offset) {
+		while (offset < length) {
+			int label = response[offset] & 0xFF;
+			if (label == 0x00) {
+				return offset + 1;
+			}
+			if ((label & 0xC0) == 0xC0) {
+				return offset + 2 <= length ? offset + 2 : -1;
+			}
+			offset += label + 1;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return The offset of the first label that is not a compression pointer, or -1 if invalid.
+	 */
+	private int followPointers(int offset) {
+		for (int i = 0; i <= MAX_POINTERS; i++) {
+			if (offset >= length) {
+				return -1;
+			}
+			int label = response[offset] & 0xFF;
+			if ((label & 0xC0) != 0xC0) {
+				return offset;
+			}
+			if (offset + 1 >= length) {
+				return -1;
+			}
+			offset = ((label & 0x3F) << 8) | (response[offset + 1] & 0xFF);
+		}
+		return -1;
+	}
+
+	private static int lower(byte b) {
+		return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+	}
+
+	private static int[] grow(int[] array) {
+		int[] grown = new int[array.length * 2];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+}
@@ -0,0 +1,26 @@
+package ecse489.helper.DNS;
+
+import java.io.IOException;
+
+/**
+ * Writes lookup results somewhere. Implementations are not thread safe unless stated otherwise.
+ */
+public interface ResultSink {
+	/**
+	 * @param result The lookup to write.
+	 * @throws IOException
+	 */
+	void write(LookupResult result) throws IOException;
+
+	/**
+	 * Pushes buffered results to the underlying stream.
+	 * @throws IOException
+	 */
+	void flush() throws IOException;
+
+	/**
+	 * Flushes and closes the underlying stream.
+	 * @throws IOException
+	 */
+	void close() throws IOException;
+}
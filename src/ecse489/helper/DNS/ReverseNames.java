@@ -0,0 +1,121 @@
+package ecse489.helper.DNS;
+
+import ecse489.helper.IllegalArgumentFormatException;
+
+/**
+ * Generates the in-addr.arpa names of every address of an IPv4 CIDR block, one at a time, so that
+ * sweeping a large block never holds more than the current address in memory.
+ */
+public class ReverseNames {
+	private static final String SUFFIX = ".in-addr.arpa";
+	private static final String IPV6_SUFFIX = "ip6.arpa";
+
+	private long next;
+	private long last;
+	private StringBuilder name = new StringBuilder(32);
+
+	/**
+	 * Public constructor.
+	 * @param cidr An IPv4 CIDR block such as 10.1.0.0/16; host bits of the address are ignored
+	 * @throws IllegalArgumentFormatException
+	 */
+	public ReverseNames(String cidr) throws IllegalArgumentFormatException {
+		int slash = cidr.indexOf('/');
+		if (slash == -1) {
+			throw new IllegalArgumentFormatException("Expected a CIDR block such as 10.1.0.0/16.");
+		}
+		int prefix;
+		try {
+			prefix = Integer.parseInt(cidr.substring(slash + 1));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentFormatException("Expected a prefix length after '/'.");
+		}
+		if (prefix < 0 || prefix > 32) {
+			throw new IllegalArgumentFormatException("Prefix length is not within 0 to 32");
+		}
+
+		long address = toLong(parseIPv4(cidr.substring(0, slash)));
+		long mask = (0xFFFFFFFFL << (32 - prefix)) & 0xFFFFFFFFL;
+		this.next = address & mask;
+		this.last = next | (~mask & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * @return Number of names left to generate.
+	 */
+	public long remaining() {
+		return last - next + 1;
+	}
+
+	public boolean hasNext() {
+		return next <= last;
+	}
+
+	/**
+	 * @return The reverse name of the next address, such as 4.3.2.1.in-addr.arpa for 1.2.3.4.
+	 */
+	public String next() {
+		long address = next++;
+		name.setLength(0);
+		name.append(address & 0xFF).append('.')
+			.append((address >> 8) & 0xFF).append('.')
+			.append((address >> 16) & 0xFF).append('.')
+			.append((address >> 24) & 0xFF).append(SUFFIX);
+		return name.toString();
+	}
+
+	/**
+	 * Converts an IPv4 or IPv6 address to its reverse name, in in-addr.arpa or ip6.arpa. Anything else,
+	 * including names already in either, is returned unchanged.
+	 * @param name A String holding an IP address or a domain name
+	 * @return The name to query for a PTR record.
+	 */
+	public static String toReverseName(String name) {
+		if (name.indexOf(':') != -1) {
+			return toIPv6ReverseName(name);
+		}
+		byte[] address;
+		try {
+			address = parseIPv4(name);
+		} catch (IllegalArgumentFormatException e) {
+			return name;
+		}
+		return (address[3] & 0xFF) + "." + (address[2] & 0xFF) + "." + (address[1] & 0xFF) + "."
+				+ (address[0] & 0xFF) + SUFFIX;
+	}
+
+	/**
+	 * Converts an IPv6 address to its reverse name, one label per nibble starting from the last, such as
+	 * 1.0.0.0...8.b.d.0.1.0.0.2.ip6.arpa for 2001:db8::1.
+	 */
+	private static String toIPv6ReverseName(String name) {
+		byte[] address;
+		try {
+			address = Converter.convertIPv6StringToByteArray(name);
+		} catch (IllegalArgumentFormatException e) {
+			return name;
+		}
+		StringBuilder reverse = new StringBuilder(72);
+		for (int i = address.length - 1; i >= 0; i--) {
+			reverse.append(Character.forDigit(address[i] & 0x0F, 16)).append('.')
+				.append(Character.forDigit((address[i] >> 4) & 0x0F, 16)).append('.');
+		}
+		return reverse.append(IPV6_SUFFIX).toString();
+	}
+
+	/**
+	 * Parses a dotted IPv4 address, reporting non numeric parts as a format error.
+	 */
+	private static byte[] parseIPv4(String address) throws IllegalArgumentFormatException {
+		try {
+			return Converter.convertIPv4StringToByteArray(address);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentFormatException("IP address is not type IPv4");
+		}
+	}
+
+	private static long toLong(byte[] address) {
+		return ((address[0] & 0xFFL) << 24) | ((address[1] & 0xFFL) << 16) | ((address[2] & 0xFFL) << 8)
+				| (address[3] & 0xFFL);
+	}
+}
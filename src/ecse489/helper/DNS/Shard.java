@@ -0,0 +1,664 @@
+package ecse489.helper.DNS;
+
+import ecse489.helper.IllegalArgumentFormatException;
+
+import java.io.IOException;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One worker of the {@link ShardedEngine}. Owns its sockets (one per address family of the upstream),
+ * its table of pending queries and its slice of the cache, so apart from the inbox, the round trip
+ * times of the {@link Upstream} and the {@link CongestionWindow} nothing here is shared with other threads.
+ */
+class Shard implements Runnable {
+	private static final int MAX_ID = 0x10000;
+	private static final int CACHE_ENTRIES = 65536;
+
+	private final Upstream upstream;
+	// Indexed by Upstream.IPV4 and Upstream.IPV6, null for a family the upstream lacks
+	private final DatagramChannel[] channels = new DatagramChannel[2];
+	private final Selector selector;
+	private final long timeoutNanos;
+	private final int retries;
+	private final AdmissionControl control;
+	private final CaptureWriter capture;
+	private final LocalZone zone;
+
+	private final ConcurrentLinkedQueue<PendingLookup> inbox = new ConcurrentLinkedQueue<PendingLookup>();
+	private final AtomicBoolean sleeping = new AtomicBoolean(false);
+	private volatile boolean running = true;
+	// Set once the thread has exited, after which submitted lookups fail straight away
+	private volatile boolean stopped = false;
+
+	// Everything below is confined to the shard's thread
+	private final PendingLookup[] pending = new PendingLookup[MAX_ID];
+	private int numOfPending = 0;
+	private int nextId;
+	private final ArrayDeque<PendingLookup> backlog = new ArrayDeque<PendingLookup>();
+	private final ArrayDeque<Deadline> deadlines = new ArrayDeque<Deadline>();
+	// Race delays follow the round trip time, so these do not expire in the order they were added
+	private final PriorityQueue<Deadline> races = new PriorityQueue<Deadline>(16, Deadline.BY_TIME);
+	private final Cache cache = new Cache();
+	// Lookups on the wire or in the backlog by cache key, so identical lookups share one query
+	private final HashMap<String, PendingLookup> inFlight = new HashMap<String, PendingLookup>();
+	// Since DNS response have an unknown length, use 1500 which is the maximum UDP packet size as limited
+	// by IP protocol
+	private final ByteBuffer incomingBuffer = ByteBuffer.allocate(1500);
+
+	/**
+	 * Package constructor.
+	 * @param upstream - Addresses of the DNS server.
+	 * @param window - Window on the queries in flight, shared with the other shards of the upstream.
+	 * @param timeout - Timeout in seconds.
+	 * @param retries - Number of retries.
+	 * @param seed - Starting transaction ID.
+	 * @param rate - Ceiling in queries per second for this shard, 0 for no ceiling.
+	 * @param capture - Receives every query and response, null to capture nothing.
+	 * @param zone - Names answered without querying the upstream, null for none.
+	 * @throws IOException
+	 */
+	protected Shard(Upstream upstream, CongestionWindow window, int timeout, int retries, int seed,
+			double rate, CaptureWriter capture, LocalZone zone) throws IOException {
+		this.upstream = upstream;
+		this.timeoutNanos = TimeUnit.SECONDS.toNanos(timeout);
+		this.retries = retries;
+		this.control = new AdmissionControl(window, rate, System.nanoTime());
+		this.capture = capture;
+		this.zone = zone;
+		this.nextId = seed & 0xFFFF;
+
+		// A connected channel lets the kernel drop datagrams from anyone but the upstream and saves
+		// allocating a source address for every packet received
+		this.selector = Selector.open();
+		for (int family = Upstream.IPV4; family <= Upstream.IPV6; family++) {
+			if (upstream.get(family) == null) {
+				continue;
+			}
+			DatagramChannel channel = DatagramChannel.open();
+			try {
+				channel.configureBlocking(false);
+				channel.connect(upstream.get(family));
+				channel.register(this.selector, SelectionKey.OP_READ);
+			} catch (IOException e) {
+				channel.close();
+				// A dual-stack upstream can do without a family this host cannot reach
+				if (!upstream.isDualStack() || channels[Upstream.IPV4] == null && family == Upstream.IPV6) {
+					discard();
+					throw e;
+				}
+				continue;
+			}
+			channels[family] = channel;
+		}
+	}
+
+	/**
+	 * Hands a lookup to this shard. Safe to call from any thread. Once the shard has stopped, the lookup
+	 * fails with the status ERROR on the calling thread instead.
+	 * @param lookup - The lookup to perform.
+	 */
+	protected void submit(PendingLookup lookup) {
+		inbox.offer(lookup);
+		if (stopped) {
+			// Checked after queuing, so that a lookup queued while the thread exits is not left behind
+			long now = System.nanoTime();
+			while ((lookup = inbox.poll()) != null) {
+				deliver(lookup, new LookupResult(lookup.name, lookup.dns, "ERROR", now - lookup.submitted));
+			}
+		} else if (sleeping.compareAndSet(true, false)) {
+			selector.wakeup();
+		}
+	}
+
+	/**
+	 * Stops the shard. Lookups still in flight complete as timeouts.
+	 */
+	protected void stop() {
+		running = false;
+		selector.wakeup();
+	}
+
+	/**
+	 * Releases the socket of a shard that was never started.
+	 */
+	protected void discard() {
+		try {
+			selector.close();
+			for (DatagramChannel channel : channels) {
+				if (channel != null) {
+					channel.close();
+				}
+			}
+		} catch (IOException e) {
+			// Nothing left to clean up
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (running) {
+				long now = System.nanoTime();
+				expireDeadlines(now);
+				expireRaces(now);
+				drainInbox(now);
+				// Taken after draining, so that the lookups just sent are woken up for as well
+				long wait = earliest(expireDeadlines(now), expireRaces(now));
+				if (!backlog.isEmpty()) {
+					wait = earliest(wait, control.nanosUntilAdmit(now, selector));
+				}
+
+				// Only block once there is nothing left to send; submit() wakes us up otherwise
+				sleeping.set(true);
+				if (inbox.isEmpty()) {
+					selector.select(wait < 0 ? 0 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait + 999999)));
+				} else {
+					selector.selectNow();
+				}
+				sleeping.set(false);
+				selector.selectedKeys().clear();
+
+				receive();
+			}
+		} catch (IOException e) {
+			System.err.println("ERROR	Socket Input/Output error in " + Thread.currentThread().getName() + ": "
+					+ e.getLocalizedMessage());
+		} finally {
+			stopped = true;
+			abandon();
+			discard();
+		}
+	}
+
+	/**
+	 * Moves submitted lookups onto the wire, answering them from the local zone or the cache or attaching
+	 * them to an identical lookup already in flight when possible. A name that cannot be queried fails
+	 * with the status BADNAME.
+	 * @param now - Current time in nanoseconds.
+	 */
+	private void drainInbox(long now) {
+		PendingLookup lookup;
+		while ((lookup = inbox.poll()) != null) {
+			byte[] local = zone == null ? null : zone.answer(0, lookup.name, lookup.dns);
+			if (local != null) {
+				lookup.done = true;
+				deliver(lookup, new LookupResult(lookup.name, lookup.dns, local, 0,
+						System.nanoTime() - lookup.submitted, true));
+				continue;
+			}
+			lookup.key = Cache.key(lookup.dns, lookup.name);
+			byte[] cached = cache.lookup(lookup.key, now);
+			if (cached != null) {
+				lookup.done = true;
+				deliver(lookup, new LookupResult(lookup.name, lookup.dns, cached, 0,
+						System.nanoTime() - lookup.submitted, true));
+				continue;
+			}
+			PendingLookup leader = inFlight.get(lookup.key);
+			if (leader != null) {
+				leader.follow(lookup);
+			} else {
+				inFlight.put(lookup.key, lookup);
+				backlog.add(lookup);
+			}
+		}
+
+		// Admission control decides how many lookups may be in flight
+		while (!backlog.isEmpty() && numOfPending < MAX_ID - 1 && control.admit(now)) {
+			lookup = backlog.poll();
+			lookup.id = allocateId(lookup);
+			try {
+				lookup.query = Message.buildQuery(lookup.id, lookup.name, lookup.dns);
+			} catch (IllegalArgumentFormatException e) {
+				release(lookup);
+				complete(lookup, null, "BADNAME", now);
+				continue;
+			}
+			send(lookup, now);
+		}
+	}
+
+	/**
+	 * Reserves the next free transaction ID for a lookup.
+	 * @param lookup - The lookup to register.
+	 * @return An integer representing the transaction ID.
+	 */
+	private int allocateId(PendingLookup lookup) {
+		while (pending[nextId] != null) {
+			nextId = (nextId + 1) & 0xFFFF;
+		}
+		int id = nextId;
+		pending[id] = lookup;
+		numOfPending++;
+		nextId = (nextId + 1) & 0xFFFF;
+		return id;
+	}
+
+	/**
+	 * Sends a lookup to the preferred address family and arms its timeout, and its race to the other
+	 * family when the upstream has both. A lookup no family could send fails with the status ERROR.
+	 * @param lookup - The lookup to send.
+	 * @param now - Current time in nanoseconds.
+	 */
+	private void send(PendingLookup lookup, long now) {
+		lookup.sends++;
+		lookup.sentAt = now;
+		lookup.racedAt = 0;
+		lookup.family = channels[upstream.preferred()] != null ? upstream.preferred() : 1 - upstream.preferred();
+		deadlines.add(new Deadline(lookup, now + timeoutNanos));
+		boolean racing = channels[1 - lookup.family] != null;
+		if (!write(lookup.family, lookup.query)) {
+			// This family cannot send at all; race the other one right away
+			if (!racing || !race(lookup, now)) {
+				release(lookup);
+				complete(lookup, null, "ERROR", now);
+			}
+		} else if (racing) {
+			races.add(new Deadline(lookup, now + upstream.raceDelay()));
+		}
+	}
+
+	/**
+	 * Sends the query of a lookup the preferred family has not answered in time to the other family.
+	 * @param lookup - The lookup to race.
+	 * @param now - Current time in nanoseconds.
+	 * @return False if the query could not be sent.
+	 */
+	private boolean race(PendingLookup lookup, long now) {
+		lookup.racedAt = now;
+		return write(1 - lookup.family, lookup.query);
+	}
+
+	/**
+	 * Writes a query to the socket of an address family. A family that cannot send counts as down: the
+	 * other family and the deadline take care of the lookup.
+	 * @param family - Upstream.IPV4 or Upstream.IPV6.
+	 * @param query - An array of bytes representing the query.
+	 * @return False if the query could not be sent.
+	 */
+	private boolean write(int family, byte[] query) {
+		try {
+			// A full socket buffer drops the datagram; the deadline turns that into a retry
+			channels[family].write(ByteBuffer.wrap(query));
+		} catch (PortUnreachableException e) {
+			// Reported for an earlier datagram; let the deadline handle it
+		} catch (IOException e) {
+			// No route to the upstream in this family, or a query the socket refuses; only this send fails
+			if (upstream.isDualStack()) {
+				upstream.fail(family);
+			}
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Races every lookup the preferred family has not answered within the race delay.
+	 * @param now - Current time in nanoseconds.
+	 * @return Nanoseconds until the next race, or -1 if none is armed.
+	 */
+	private long expireRaces(long now) {
+		Deadline deadline;
+		while ((deadline = races.peek()) != null) {
+			PendingLookup lookup = deadline.lookup;
+			if (lookup.done || deadline.sends != lookup.sends) {
+				races.poll();
+				continue;
+			}
+			if (deadline.at - now > 0) {
+				return deadline.at - now;
+			}
+			races.poll();
+			// Should the other family fail too, the preferred one may still answer before the deadline
+			race(lookup, now);
+		}
+		return -1;
+	}
+
+	/**
+	 * Retries or fails every lookup whose timeout has passed. Deadlines are armed with a fixed timeout,
+	 * so they expire in the order they were added.
+	 * @param now - Current time in nanoseconds.
+	 * @return Nanoseconds until the next deadline, or -1 if nothing is in flight.
+	 */
+	private long expireDeadlines(long now) {
+		Deadline deadline;
+		while ((deadline = deadlines.peek()) != null) {
+			PendingLookup lookup = deadline.lookup;
+			// Answered, or superseded by a resend
+			if (lookup.done || deadline.sends != lookup.sends) {
+				deadlines.poll();
+				continue;
+			}
+			if (deadline.at - now > 0) {
+				return deadline.at - now;
+			}
+			deadlines.poll();
+			control.onCongestion(lookup.sentAt, now);
+			if (lookup.racedAt != 0) {
+				// Neither family answered; both count as slow
+				upstream.sample(lookup.family, now - lookup.sentAt);
+				upstream.sample(1 - lookup.family, now - lookup.racedAt);
+			} else if (upstream.isDualStack()) {
+				upstream.sample(lookup.family, now - lookup.sentAt);
+			}
+			if (lookup.tries < retries) {
+				requeue(lookup, null, now);
+			} else {
+				// Every retry has been used; tries already counts them
+				release(lookup);
+				complete(lookup, null, null, now);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Reads every datagram waiting on the sockets and completes the matching lookups.
+	 */
+	private void receive() {
+		for (int family = Upstream.IPV4; family <= Upstream.IPV6; family++) {
+			if (channels[family] != null) {
+				receive(family);
+			}
+		}
+	}
+
+	/**
+	 * Reads every datagram waiting on the socket of an address family. An error reading, such as an
+	 * unreachable host or network reported for an earlier send, counts the family as down and leaves the
+	 * rest of the datagrams for the next pass.
+	 * @param family - Upstream.IPV4 or Upstream.IPV6.
+	 */
+	private void receive(int family) {
+		DatagramChannel channel = channels[family];
+		while (true) {
+			incomingBuffer.clear();
+			int length;
+			try {
+				length = channel.read(incomingBuffer);
+			} catch (PortUnreachableException e) {
+				continue;
+			} catch (IOException e) {
+				if (upstream.isDualStack()) {
+					upstream.fail(family);
+				}
+				return;
+			}
+			if (length <= 0) {
+				return;
+			}
+			if (length < Message.HEADER_LENGTH) {
+				continue;
+			}
+
+			byte[] data = incomingBuffer.array();
+			PendingLookup lookup = pending[Message.getId(data)];
+			// Late answer to a lookup that already gave up, or a response to a different question
+			if (lookup == null || !Message.isResponse(data) || !sameQuestion(lookup.query, data, length)) {
+				continue;
+			}
+
+			byte[] response = Arrays.copyOf(data, length);
+			long now = System.nanoTime();
+			int rcode = Message.getRcode(response);
+			if (upstream.isDualStack()) {
+				if (family == lookup.family) {
+					upstream.sample(family, now - lookup.sentAt);
+				} else if (lookup.racedAt != 0) {
+					// The raced family won; the preferred one has been waiting longer than that
+					upstream.sample(family, now - lookup.racedAt);
+					upstream.sample(lookup.family, now - lookup.sentAt);
+				}
+			}
+
+			// An upstream shedding load answers REFUSED or SERVFAIL; back off and try again later
+			if (rcode == Message.RCODE_REFUSED || rcode == Message.RCODE_SERVFAIL) {
+				control.onCongestion(lookup.sentAt, now);
+				if (lookup.tries < retries) {
+					requeue(lookup, response, now);
+					continue;
+				}
+			} else {
+				control.onAnswer();
+			}
+
+			release(lookup);
+			if (rcode == Message.RCODE_NOERROR) {
+				cache.store(lookup.key, response, now);
+			}
+			complete(lookup, response, null, now);
+		}
+	}
+
+	/**
+	 * Hands the outcome of a lookup to its handler and to the handlers of its followers.
+	 * @param lookup - The completed lookup.
+	 * @param response - An array of bytes representing the response, null on timeout or failure.
+	 * @param error - The status of a lookup that failed without a response, null otherwise.
+	 * @param now - Current time in nanoseconds.
+	 */
+	private void complete(PendingLookup lookup, byte[] response, String error, long now) {
+		inFlight.remove(lookup.key);
+		if (error == null) {
+			record(lookup, response, now);
+		}
+		deliver(lookup, result(lookup, lookup.tries, response, error, now));
+		if (lookup.followers != null) {
+			for (PendingLookup follower : lookup.followers) {
+				follower.done = true;
+				deliver(follower, result(follower, lookup.tries, response, error, now));
+			}
+		}
+	}
+
+	/**
+	 * @param lookup - The lookup or follower to report.
+	 * @param tries - Retries used by the query, which followers share with their leader.
+	 * @return The result to hand to the handler of the lookup.
+	 */
+	private static LookupResult result(PendingLookup lookup, int tries, byte[] response, String error, long now) {
+		if (error != null) {
+			return new LookupResult(lookup.name, lookup.dns, error, now - lookup.submitted);
+		}
+		return new LookupResult(lookup.name, lookup.dns, response, tries, now - lookup.submitted, false);
+	}
+
+	/**
+	 * Appends the last query of a lookup and its outcome to the capture file, if any.
+	 * @param lookup - The lookup whose query went to the wire.
+	 * @param response - An array of bytes representing the response, null on timeout.
+	 * @param now - Current time in nanoseconds.
+	 */
+	private void record(PendingLookup lookup, byte[] response, long now) {
+		if (capture != null && lookup.query != null) {
+			try {
+				capture.record(lookup.query, response, response == null ? 0 : response.length, lookup.sentAt, now);
+			} catch (IOException e) {
+				System.err.println("ERROR	Could not write to the capture file: " + e.getLocalizedMessage());
+			}
+		}
+	}
+
+	/**
+	 * Calls the handler of a lookup. A handler that throws loses its own result but must not take down
+	 * the shard and every other lookup it owns.
+	 * @param lookup - The lookup whose handler to call.
+	 * @param result - The result to hand over.
+	 */
+	private void deliver(PendingLookup lookup, LookupResult result) {
+		try {
+			lookup.handler.onResult(result);
+		} catch (RuntimeException e) {
+			System.err.println("ERROR	Result handler failed for " + lookup.name + ": " + e);
+		}
+	}
+
+	/**
+	 * Verifies that a response echoes the question of the query.
+	 * @param query - An array of bytes representing the query sent.
+	 * @param response - An array of bytes representing the response received.
+	 * @param length - An integer representing the number of valid bytes in the response.
+	 * @return True if the question sections match, ignoring case.
+	 */
+	private boolean sameQuestion(byte[] query, byte[] response, int length) {
+		if (length < query.length) {
+			return false;
+		}
+		for (int i = Message.HEADER_LENGTH; i < query.length; i++) {
+			if (query[i] != response[i] && (query[i] | 0x20) != (response[i] | 0x20)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Frees the transaction ID of a failed lookup and puts it back at the head of the backlog, so the
+	 * retry waits for admission like any other query. The failed send is captured like a completed one.
+	 * @param lookup - The lookup to retry.
+	 * @param response - The REFUSED or SERVFAIL response, null on timeout.
+	 * @param now - Current time in nanoseconds.
+	 */
+	private void requeue(PendingLookup lookup, byte[] response, long now) {
+		record(lookup, response, now);
+		// Rebuilt on the next send; a lookup abandoned before then is not captured twice
+		lookup.query = null;
+		pending[lookup.id] = null;
+		numOfPending--;
+		control.release();
+		lookup.tries++;
+		// Invalidates the deadline armed for the previous send
+		lookup.sends++;
+		backlog.addFirst(lookup);
+	}
+
+	/**
+	 * @return The earliest of two waits in nanoseconds, where -1 means no wait is pending.
+	 */
+	private static long earliest(long a, long b) {
+		if (a < 0) {
+			return b;
+		}
+		return b < 0 ? a : Math.min(a, b);
+	}
+
+	/**
+	 * Marks a lookup as complete and frees its transaction ID.
+	 * @param lookup - The completed lookup.
+	 */
+	private void release(PendingLookup lookup) {
+		lookup.done = true;
+		pending[lookup.id] = null;
+		numOfPending--;
+		control.release();
+	}
+
+	/**
+	 * Completes everything still owned by the shard as a timeout once it stops.
+	 */
+	private void abandon() {
+		long now = System.nanoTime();
+		for (int i = 0; i < MAX_ID; i++) {
+			if (pending[i] != null) {
+				backlog.add(pending[i]);
+				pending[i] = null;
+				control.release();
+			}
+		}
+		numOfPending = 0;
+		PendingLookup lookup;
+		while ((lookup = inbox.poll()) != null) {
+			backlog.add(lookup);
+		}
+		while ((lookup = backlog.poll()) != null) {
+			lookup.done = true;
+			complete(lookup, null, null, now);
+		}
+	}
+
+	/**
+	 * A timeout or a race armed for one send of a lookup.
+	 */
+	private static class Deadline {
+		private static final Comparator<Deadline> BY_TIME = new Comparator<Deadline>() {
+			@Override
+			public int compare(Deadline a, Deadline b) {
+				return Long.signum(a.at - b.at);
+			}
+		};
+
+		private final PendingLookup lookup;
+		private final int sends;
+		private final long at;
+
+		private Deadline(PendingLookup lookup, long at) {
+			this.lookup = lookup;
+			this.sends = lookup.sends;
+			this.at = at;
+		}
+	}
+
+	/**
+	 * The shard's slice of the response cache, evicting the least recently used entry once full.
+	 */
+	private static class Cache extends LinkedHashMap<String, Cache.Entry> {
+		private static final long serialVersionUID = 1L;
+
+		private Cache() {
+			super(1024, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+			return size() > CACHE_ENTRIES;
+		}
+
+		private byte[] lookup(String key, long now) {
+			Entry entry = get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (entry.expires - now <= 0) {
+				remove(key);
+				return null;
+			}
+			return entry.response;
+		}
+
+		private void store(String key, byte[] response, long now) {
+			int ttl = Message.minimumAnswerTtl(response, response.length);
+			if (ttl > 0) {
+				put(key, new Entry(response, now + TimeUnit.SECONDS.toNanos(ttl)));
+			}
+		}
+
+		private static String key(DNSCategory dns, String name) {
+			return dns.name() + ' ' + name.toLowerCase();
+		}
+
+		private static class Entry {
+			private final byte[] response;
+			private final long expires;
+
+			private Entry(byte[] response, long expires) {
+				this.response = response;
+				this.expires = expires;
+			}
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package ecse489.helper.DNS;
+
+import ecse489.helper.IllegalArgumentFormatException;
+import ecse489.helper.Options;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Resolves many names concurrently. Each worker thread owns its own sockets, pending query table and
+ * cache, and every name is always routed to the same worker by hashing it, so the hot path takes no
+ * shared locks. Workers pace the load on the upstream together through one {@link CongestionWindow},
+ * and race the address families of a dual-stack {@link Upstream}.
+ */
+public class ShardedEngine {
+	private Shard[] shards;
+	private Thread[] threads;
+	private CaptureWriter capture;
+	private LocalZone zone;
+
+	/**
+	 * Public constructor. Starts one worker thread per {@link Options#getWorkers()}.
+	 * @param options Options holding the server, port, timeout, retries and number of workers
+	 * @throws IOException
+	 * @throws IllegalArgumentFormatException
+	 */
+	public ShardedEngine(Options options) throws IOException, IllegalArgumentFormatException {
+		Upstream upstream = new Upstream(options.getServer(), options.getPort());
+
+		if (options.getZone() != null) {
+			this.zone = new LocalZone(options.getZone());
+		}
+		if (options.getCapture() != null) {
+			this.capture = new CaptureWriter(options.getCapture());
+		}
+
+		// One window for the upstream, so that every worker backs off when any of them sees congestion
+		CongestionWindow window = new CongestionWindow(System.nanoTime());
+		Random random = new Random();
+		this.shards = new Shard[options.getWorkers()];
+		this.threads = new Thread[options.getWorkers()];
+		try {
+			for (int i = 0; i < shards.length; i++) {
+				shards[i] = new Shard(upstream, window, options.getTimeout(), options.getRetries(), random.nextInt(),
+						(double) options.getRateLimit() / shards.length, capture, zone);
+			}
+		} catch (IOException e) {
+			for (Shard shard : shards) {
+				if (shard != null) {
+					shard.discard();
+				}
+			}
+			if (capture != null) {
+				capture.close();
+			}
+			throw e;
+		}
+		for (int i = 0; i < shards.length; i++) {
+			threads[i] = new Thread(shards[i], "dns-shard-" + i);
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+		// Long runs pick up edits of the zone file as they go
+		if (zone != null) {
+			zone.watch();
+		}
+	}
+
+	/**
+	 * Queues a lookup. The handler is called exactly once, from the worker thread owning the name, or from
+	 * the calling thread with the status ERROR if that worker has stopped on a socket error.
+	 * @param name Domain name to lookup
+	 * @param dns DNS request type
+	 * @param handler Receives the result
+	 */
+	public void submit(String name, DNSCategory dns, LookupHandler handler) {
+		shards[shardFor(name)].submit(new PendingLookup(name, dns, handler, System.nanoTime()));
+	}
+
+	public int getWorkers() {
+		return shards.length;
+	}
+
+	/**
+	 * Stops every worker and waits for them to exit. Lookups still in flight complete as timeouts.
+	 */
+	public void close() {
+		if (zone != null) {
+			zone.close();
+		}
+		for (Shard shard : shards) {
+			shard.stop();
+		}
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+		if (capture != null) {
+			try {
+				capture.close();
+			} catch (IOException e) {
+				System.err.println("ERROR	Could not close the capture file: " + e.getLocalizedMessage());
+			}
+		}
+	}
+
+	/**
+	 * Picks the worker owning a name. Hashes without allocating a lower case copy of the name.
+	 * @param name - A String representing a domain name.
+	 * @return The index of the owning shard.
+	 */
+	private int shardFor(String name) {
+		int hash = 0;
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c >= 'A' && c <= 'Z') {
+				c += 'a' - 'A';
+			}
+			hash = 31 * hash + c;
+		}
+		hash ^= (hash >>> 16);
+		return (hash & 0x7FFFFFFF) % shards.length;
+	}
+}
@@ -0,0 +1,26 @@
+package ecse489.helper.DNS;
+
+import java.io.IOException;
+import java.net.SocketOption;
+import java.nio.channels.NetworkChannel;
+
+class Sockets {
+	/**
+	 * Enables SO_REUSEPORT on a channel so that several receive sockets may be bound to the same port
+	 * and have the kernel spread incoming datagrams between them. The option is looked up by name since
+	 * it is only exposed by the platform on Java 9 and later.
+	 * @param channel - An unbound channel.
+	 * @return True if the option is supported and was enabled.
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	protected static boolean enableReusePort(NetworkChannel channel) throws IOException {
+		for (SocketOption<?> option : channel.supportedOptions()) {
+			if ("SO_REUSEPORT".equals(option.name()) && option.type() == Boolean.class) {
+				channel.setOption((SocketOption<Boolean>) option, Boolean.TRUE);
+				return true;
+			}
+		}
+		return false;
+	}
+}
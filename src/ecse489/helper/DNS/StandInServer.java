@@ -0,0 +1,275 @@
+package ecse489.helper.DNS;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * A local DNS server answering every query with a synthetic record, used by the benchmarks. MX answers
+ * for about half of the names carry the address of the exchange in the additional section. Each thread
+ * receives on its own socket bound to the same port with SO_REUSEPORT; where the option is unsupported
+ * every thread shares one socket instead.
+ */
+public class StandInServer {
+	private static final int TTL = 300;
+
+	private DatagramChannel[] channels;
+	private Thread[] threads;
+	private int port;
+
+	/**
+	 * Public constructor. Binds to an ephemeral port on the loopback interface.
+	 * @param numOfThreads Number of threads answering queries
+	 * @throws IOException
+	 */
+	public StandInServer(int numOfThreads) throws IOException {
+		this(numOfThreads, InetAddress.getByName("127.0.0.1"), 0);
+	}
+
+	/**
+	 * Public constructor.
+	 * @param numOfThreads Number of threads answering queries
+	 * @param loopback Address to bind to, such as 127.0.0.1 or ::1
+	 * @param port Port to bind to, 0 for an ephemeral port
+	 * @throws IOException
+	 */
+	public StandInServer(int numOfThreads, InetAddress loopback, int port) throws IOException {
+		this.channels = new DatagramChannel[numOfThreads];
+		this.threads = new Thread[numOfThreads];
+
+		DatagramChannel first = DatagramChannel.open();
+		boolean reusePort = Sockets.enableReusePort(first);
+		first.bind(new InetSocketAddress(loopback, port));
+		this.port = ((InetSocketAddress) first.getLocalAddress()).getPort();
+		channels[0] = first;
+		for (int i = 1; i < numOfThreads; i++) {
+			if (reusePort) {
+				channels[i] = DatagramChannel.open();
+				Sockets.enableReusePort(channels[i]);
+				channels[i].bind(new InetSocketAddress(loopback, this.port));
+			} else {
+				channels[i] = first;
+			}
+		}
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * Starts answering queries.
+	 */
+	public void start() {
+		for (int i = 0; i < threads.length; i++) {
+			final DatagramChannel channel = channels[i];
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					serve(channel);
+				}
+			}, "dns-stand-in-" + i);
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+	}
+
+	/**
+	 * Stops answering queries and releases the sockets, waiting for the port to be free again.
+	 */
+	public void close() {
+		for (DatagramChannel channel : channels) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// Already closed
+			}
+		}
+		// The port is only released once no thread is blocked on the sockets any more
+		for (Thread thread : threads) {
+			if (thread != null) {
+				try {
+					thread.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Answers queries arriving on a socket until it is closed.
+	 * @param channel - A bound channel.
+	 */
+	private void serve(DatagramChannel channel) {
+		ByteBuffer incoming = ByteBuffer.allocate(512);
+		byte[] outgoing = new byte[512];
+		try {
+			while (true) {
+				incoming.clear();
+				SocketAddress client = channel.receive(incoming);
+				int length = answer(incoming.array(), incoming.position(), outgoing);
+				if (length > 0) {
+					channel.send(ByteBuffer.wrap(outgoing, 0, length), client);
+				}
+			}
+		} catch (ClosedChannelException e) {
+			// Server closed
+		} catch (IOException e) {
+			System.out.println("ERROR	Stand-in server stopped: " + e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Builds the response to a query: the question is echoed back followed by one synthetic answer.
+	 * @param query - An array of bytes representing a DNS query.
+	 * @param length - An integer representing the number of valid bytes in the query.
+	 * @param response - An array of bytes receiving the response.
+	 * @return The length of the response, or -1 if the query is malformed.
+	 */
+	protected static int answer(byte[] query, int length, byte[] response) {
+		int end;
+		try {
+			end = Message.skipName(query, Message.HEADER_LENGTH) + 4;
+		} catch (IndexOutOfBoundsException e) {
+			return -1;
+		}
+		if (length < Message.HEADER_LENGTH || end > length || end + 64 > response.length) {
+			return -1;
+		}
+		int type = Message.readShort(query, end - 4);
+		System.arraycopy(query, 0, response, 0, end);
+
+		// QR: 1, RD copied from the query, RA: 1, Rcode: 0000
+		response[0x02] = (byte) (0x80 | (query[0x02] & 0x01));
+		response[0x03] = (byte) 0x80;
+		// QDCOUNT: 1, ANCOUNT: 1, NSCOUNT: 0, ARCOUNT: 0
+		response[0x04] = 0x00;
+		response[0x05] = 0x01;
+		response[0x06] = 0x00;
+		response[0x07] = 0x01;
+		for (int i = 0x08; i < Message.HEADER_LENGTH; i++) {
+			response[i] = 0x00;
+		}
+
+		// Name compressed as a pointer to the question, then type, class IN and TTL
+		int pointer = end;
+		response[pointer++] = (byte) 0xC0;
+		response[pointer++] = (byte) Message.HEADER_LENGTH;
+		response[pointer++] = (byte) (type >> 8);
+		response[pointer++] = (byte) type;
+		response[pointer++] = 0x00;
+		response[pointer++] = 0x01;
+		response[pointer++] = (byte) (TTL >> 24);
+		response[pointer++] = (byte) (TTL >> 16);
+		response[pointer++] = (byte) (TTL >> 8);
+		response[pointer++] = (byte) TTL;
+
+		int hash = 0;
+		for (int i = Message.HEADER_LENGTH; i < end; i++) {
+			hash = 31 * hash + query[i];
+		}
+
+		switch (type) {
+			case 0x01:
+				// A: 10.x.y.z derived from the name
+				pointer = writeShort(response, pointer, 4);
+				response[pointer++] = 10;
+				response[pointer++] = (byte) (hash >> 16);
+				response[pointer++] = (byte) (hash >> 8);
+				response[pointer++] = (byte) hash;
+				break;
+			case 0x02:
+				// NS: ns.<name>
+				pointer = writeShort(response, pointer, 5);
+				pointer = writeLabel(response, pointer, "ns");
+				break;
+			case 0x1C:
+				// AAAA: fd00::x:y derived from the name
+				pointer = writeShort(response, pointer, 16);
+				response[pointer++] = (byte) 0xFD;
+				for (int i = 1; i < 12; i++) {
+					response[pointer++] = 0x00;
+				}
+				response[pointer++] = (byte) (hash >> 24);
+				response[pointer++] = (byte) (hash >> 16);
+				response[pointer++] = (byte) (hash >> 8);
+				response[pointer++] = (byte) hash;
+				break;
+			case 0x0C:
+				// PTR: h<hash>.stand-in
+				String host = "h" + Integer.toHexString(hash);
+				pointer = writeShort(response, pointer, host.length() + 1 + 9 + 1);
+				response[pointer++] = (byte) host.length();
+				for (int i = 0; i < host.length(); i++) {
+					response[pointer++] = (byte) host.charAt(i);
+				}
+				response[pointer++] = 8;
+				for (int i = 0; i < 8; i++) {
+					response[pointer++] = (byte) "stand-in".charAt(i);
+				}
+				response[pointer++] = 0x00;
+				break;
+			case 0x0F:
+				// MX: 10 mail.<name>
+				pointer = writeShort(response, pointer, 9);
+				pointer = writeShort(response, pointer, 10);
+				int exchange = pointer;
+				pointer = writeLabel(response, pointer, "mail");
+				if ((hash & 0x01) == 0) {
+					// Glue: A record for mail.<name>, matching what an A query for it returns
+					int glueHash = 0;
+					for (int i = exchange; i < exchange + 5; i++) {
+						glueHash = 31 * glueHash + response[i];
+					}
+					for (int i = Message.HEADER_LENGTH; i < end - 4; i++) {
+						glueHash = 31 * glueHash + query[i];
+					}
+					// QTYPE A, QCLASS IN
+					glueHash = 31 * (31 * (31 * (31 * glueHash) + 1)) + 1;
+					response[0x0B] = 0x01;
+					response[pointer++] = (byte) (0xC0 | (exchange >> 8));
+					response[pointer++] = (byte) exchange;
+					pointer = writeShort(response, pointer, 0x01);
+					pointer = writeShort(response, pointer, 0x01);
+					pointer = writeShort(response, pointer, 0);
+					pointer = writeShort(response, pointer, TTL);
+					pointer = writeShort(response, pointer, 4);
+					response[pointer++] = 10;
+					response[pointer++] = (byte) (glueHash >> 16);
+					response[pointer++] = (byte) (glueHash >> 8);
+					response[pointer++] = (byte) glueHash;
+				}
+				break;
+			default:
+				// No data for other types
+				response[0x07] = 0x00;
+				return end;
+		}
+		return pointer;
+	}
+
+	private static int writeShort(byte[] response, int pointer, int value) {
+		response[pointer++] = (byte) (value >> 8);
+		response[pointer++] = (byte) value;
+		return pointer;
+	}
+
+	/**
+	 * Writes a single label followed by a pointer back to the question name.
+	 */
+	private static int writeLabel(byte[] response, int pointer, String label) {
+		response[pointer++] = (byte) label.length();
+		for (int i = 0; i < label.length(); i++) {
+			response[pointer++] = (byte) label.charAt(i);
+		}
+		response[pointer++] = (byte) 0xC0;
+		response[pointer++] = (byte) Message.HEADER_LENGTH;
+		return pointer;
+	}
+}
@@ -0,0 +1,104 @@
+package ecse489.helper.DNS;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Base of the line oriented sinks: a line is rendered into a reused builder and copied byte by byte
+ * (ISO-8859-1, which is how names are decoded) into a large buffer. A response the view cannot decode is
+ * written as a FORMERR line without records rather than failing the whole run.
+ */
+abstract class TextSink implements ResultSink {
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	protected final StringBuilder line = new StringBuilder(256);
+	// Scratch space for a single field that needs escaping
+	protected final StringBuilder field = new StringBuilder(64);
+	protected final ResponseView view = new ResponseView();
+	private final OutputStream out;
+	private byte[] bytes = new byte[256];
+
+	protected TextSink(OutputStream out) {
+		this.out = new BufferedOutputStream(out, BUFFER_SIZE);
+	}
+
+	@Override
+	public void write(LookupResult result) throws IOException {
+		try {
+			render(result);
+		} catch (RuntimeException e) {
+			// Malformed response; drop whatever was rendered of it
+			line.setLength(0);
+			renderMalformed(result);
+		}
+		emit();
+	}
+
+	/**
+	 * Renders a result into the line, possibly as several lines separated by newlines.
+	 * @param result A completed lookup.
+	 * @throws IllegalStateException If the response is malformed.
+	 */
+	protected abstract void render(LookupResult result);
+
+	/**
+	 * Renders a result whose response could not be decoded, with the status FORMERR and no records.
+	 * @param result A completed lookup.
+	 */
+	protected abstract void renderMalformed(LookupResult result);
+
+	/**
+	 * Writes the line built so far followed by a newline, then clears it.
+	 * @throws IOException
+	 */
+	protected void emit() throws IOException {
+		line.append('\n');
+		if (bytes.length < line.length()) {
+			bytes = new byte[Math.max(line.length(), bytes.length * 2)];
+		}
+		for (int i = 0; i < line.length(); i++) {
+			bytes[i] = (byte) line.charAt(i);
+		}
+		out.write(bytes, 0, line.length());
+		line.setLength(0);
+	}
+
+	/**
+	 * @param result A completed lookup.
+	 * @return True if the lookup has a response and the view now wraps it.
+	 */
+	protected boolean wrap(LookupResult result) {
+		if (result.getResponse() == null) {
+			return false;
+		}
+		view.wrap(result.getResponse());
+		return true;
+	}
+
+	/**
+	 * Appends a round trip time in milliseconds with microsecond precision.
+	 */
+	protected void appendMillis(long nanos) {
+		long micros = nanos / 1000;
+		line.append(micros / 1000).append('.');
+		long fraction = micros % 1000;
+		if (fraction < 100) {
+			line.append('0');
+		}
+		if (fraction < 10) {
+			line.append('0');
+		}
+		line.append(fraction);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
@@ -0,0 +1,114 @@
+package ecse489.helper.DNS;
+
+import ecse489.helper.IllegalArgumentFormatException;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The DNS server as given on the command line: an IPv4 address, an IPv6 address, or one of each
+ * separated by a comma for a dual-stack server. With both, queries go to the family that has been
+ * answering faster, and the other family is raced in when no answer arrives within a short delay
+ * (Happy Eyeballs, RFC 8305), so a broken path costs that delay instead of a full timeout. Round trip
+ * times are smoothed per family and shared by every lookup, so the preference is remembered for as long
+ * as the upstream is in use.
+ */
+class Upstream {
+	protected static final int IPV4 = 0;
+	protected static final int IPV6 = 1;
+
+	// RFC 8305 recommends 250 ms before starting the next attempt; close servers get less
+	private static final long MAX_RACE_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+	private static final long MIN_RACE_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private final InetSocketAddress[] addresses = new InetSocketAddress[2];
+	// Smoothed round trip time of each family in nanoseconds, 0 until measured. Updated without locking
+	// by every shard: a lost update only delays the average by one sample.
+	private final AtomicLongArray smoothedRtt = new AtomicLongArray(2);
+
+	/**
+	 * Package constructor.
+	 * @param server - An IPv4 or IPv6 address, or one of each separated by a comma.
+	 * @param port - The port of the server.
+	 * @throws IllegalArgumentFormatException
+	 */
+	protected Upstream(String server, int port) throws IllegalArgumentFormatException {
+		String[] parts = server.split(",");
+		if (parts.length > 2) {
+			throw new IllegalArgumentFormatException("Expected at most one IPv4 and one IPv6 server address.");
+		}
+		for (String part : parts) {
+			byte[] address = Converter.convertIPStringToByteArray(part.trim());
+			int family = address.length == 16 ? IPV6 : IPV4;
+			if (addresses[family] != null) {
+				throw new IllegalArgumentFormatException("Expected at most one IPv4 and one IPv6 server address.");
+			}
+			try {
+				addresses[family] = new InetSocketAddress(InetAddress.getByAddress(address), port);
+			} catch (UnknownHostException e) {
+				// Only thrown for addresses of illegal length
+				throw new IllegalArgumentFormatException("IP address is neither IPv4 nor IPv6");
+			}
+		}
+	}
+
+	/**
+	 * @param family - IPV4 or IPV6.
+	 * @return The address of the server in that family, or null if none was given.
+	 */
+	protected InetSocketAddress get(int family) {
+		return addresses[family];
+	}
+
+	protected boolean isDualStack() {
+		return addresses[IPV4] != null && addresses[IPV6] != null;
+	}
+
+	/**
+	 * @return The family to send to first: the only one given, else the one with the lower smoothed round
+	 * trip time. A family not measured yet is tried first, IPv6 before IPv4.
+	 */
+	protected int preferred() {
+		if (!isDualStack()) {
+			return addresses[IPV4] != null ? IPV4 : IPV6;
+		}
+		return smoothedRtt.get(IPV4) < smoothedRtt.get(IPV6) ? IPV4 : IPV6;
+	}
+
+	/**
+	 * @return Nanoseconds to wait for the preferred family before racing the other: twice its smoothed
+	 * round trip time, within 10 to 250 ms. The full 250 ms until it has been measured.
+	 */
+	protected long raceDelay() {
+		long rtt = smoothedRtt.get(preferred());
+		if (rtt == 0) {
+			return MAX_RACE_DELAY_NANOS;
+		}
+		long delay = 2 * rtt;
+		return Math.min(MAX_RACE_DELAY_NANOS, Math.max(MIN_RACE_DELAY_NANOS, delay));
+	}
+
+	/**
+	 * Records that a family could not send or receive, as if it had made a query wait the longest race
+	 * delay, so that the other family is soon preferred.
+	 * @param family - IPV4 or IPV6.
+	 */
+	protected void fail(int family) {
+		sample(family, MAX_RACE_DELAY_NANOS);
+	}
+
+	/**
+	 * Records how long a family took to answer, or how long it had been waiting when it lost a race or
+	 * timed out, which is a lower bound of its round trip time.
+	 * @param family - IPV4 or IPV6.
+	 * @param nanos - Nanoseconds waited.
+	 */
+	protected void sample(int family, long nanos) {
+		long previous = smoothedRtt.get(family);
+		// Same weight as the TCP estimator (RFC 6298)
+		smoothedRtt.set(family, previous == 0 ? Math.max(nanos, 1) : previous + (nanos - previous) / 8);
+	}
+}
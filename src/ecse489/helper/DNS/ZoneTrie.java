@@ -0,0 +1,181 @@
+package ecse489.helper.DNS;
+
+/**
+ * The records of a {@link LocalZone}, indexed by name in a trie of labels read from right to left, so
+ * that www.example.com is found under com, then example, then www. A lookup costs one hash probe per
+ * label of the name, whatever the number of names held, and compares labels in place without
+ * allocating. A *.name entry matches any name ending in .name that has no records of its own; the
+ * deepest such wildcard wins. Names are matched case-insensitively.
+ *
+ * Not thread safe while records are added; safe to share once built.
+ */
+class ZoneTrie {
+	private final Node root = new Node();
+	private int size = 0;
+
+	/**
+	 * A record held by the zone, its data already in wire format.
+	 */
+	protected static class Record {
+		protected final int type;
+		protected final int ttl;
+		protected final byte[] data;
+		// Name the data points to for NS, MX and PTR records, null otherwise
+		protected final String target;
+
+		protected Record(int type, int ttl, byte[] data, String target) {
+			this.type = type;
+			this.ttl = ttl;
+			this.data = data;
+			this.target = target;
+		}
+	}
+
+	/**
+	 * A label of the trie. Children are kept in an open addressing table rather than a map, so that
+	 * millions of names do not cost a map entry each.
+	 */
+	private static class Node {
+		private String[] labels;
+		private Node[] children;
+		private int numOfChildren;
+		private Node wildcard;
+		private Record[] records;
+
+		private Node child(String name, int start, int end) {
+			if (labels == null) {
+				return null;
+			}
+			int mask = labels.length - 1;
+			for (int i = hash(name, start, end) & mask; labels[i] != null; i = (i + 1) & mask) {
+				if (labels[i].length() == end - start && labels[i].regionMatches(true, 0, name, start, end - start)) {
+					return children[i];
+				}
+			}
+			return null;
+		}
+
+		private Node addChild(String name, int start, int end) {
+			Node child = child(name, start, end);
+			if (child != null) {
+				return child;
+			}
+			if (labels == null) {
+				labels = new String[2];
+				children = new Node[2];
+			} else if ((numOfChildren + 1) * 4 > labels.length * 3) {
+				grow();
+			}
+			child = new Node();
+			put(name.substring(start, end), child);
+			numOfChildren++;
+			return child;
+		}
+
+		private void put(String label, Node child) {
+			int mask = labels.length - 1;
+			int i = hash(label, 0, label.length()) & mask;
+			while (labels[i] != null) {
+				i = (i + 1) & mask;
+			}
+			labels[i] = label;
+			children[i] = child;
+		}
+
+		private void grow() {
+			String[] oldLabels = labels;
+			Node[] oldChildren = children;
+			labels = new String[oldLabels.length * 2];
+			children = new Node[oldLabels.length * 2];
+			for (int i = 0; i < oldLabels.length; i++) {
+				if (oldLabels[i] != null) {
+					put(oldLabels[i], oldChildren[i]);
+				}
+			}
+		}
+
+		private void addRecord(Record record) {
+			if (records == null) {
+				records = new Record[] { record };
+			} else {
+				Record[] grown = new Record[records.length + 1];
+				System.arraycopy(records, 0, grown, 0, records.length);
+				grown[records.length] = record;
+				records = grown;
+			}
+		}
+	}
+
+	/**
+	 * Adds a record.
+	 * @param name - The owner name, possibly starting with the *. wildcard label.
+	 * @param record - The record.
+	 */
+	protected void add(String name, Record record) {
+		Node node = root;
+		int end = name.length();
+		while (end > 0) {
+			int start = name.lastIndexOf('.', end - 1) + 1;
+			if (start == 0 && end == 1 && name.charAt(0) == '*') {
+				if (node.wildcard == null) {
+					node.wildcard = new Node();
+				}
+				node = node.wildcard;
+			} else if (start < end) {
+				node = node.addChild(name, start, end);
+			}
+			end = start - 1;
+		}
+		node.addRecord(record);
+		size++;
+	}
+
+	/**
+	 * Finds the records of a name.
+	 * @param name - A String representing a domain name.
+	 * @return The records of the name, or of the deepest wildcard covering it, or null if the zone
+	 * holds neither.
+	 */
+	protected Record[] lookup(String name) {
+		Node node = root;
+		Node wildcard = null;
+		int end = name.length();
+		while (end > 0 && node != null) {
+			int start = name.lastIndexOf('.', end - 1) + 1;
+			if (start < end) {
+				// A wildcard below this node covers every name with at least one more label
+				if (node.wildcard != null) {
+					wildcard = node.wildcard;
+				}
+				node = node.child(name, start, end);
+			}
+			end = start - 1;
+		}
+		if (node != null && node.records != null) {
+			return node.records;
+		}
+		return wildcard == null ? null : wildcard.records;
+	}
+
+	/**
+	 * @return The number of records held.
+	 */
+	protected int size() {
+		return size;
+	}
+
+	/**
+	 * Hashes a label as if it were lower case.
+	 */
+	private static int hash(String name, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			char c = name.charAt(i);
+			if (c >= 'A' && c <= 'Z') {
+				c += 'a' - 'A';
+			}
+			hash = 31 * hash + c;
+		}
+		return hash ^ (hash >>> 16);
+	}
+}
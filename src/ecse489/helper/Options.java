@@ -1,6 +1,7 @@
 package ecse489.helper;
 
 import ecse489.helper.DNS.DNSCategory;
+import ecse489.helper.DNS.OutputFormat;
 
 public class Options {
     private int timeout;
@@ -9,6 +10,13 @@ public class Options {
     private DNSCategory dns;
     private String name;
     private String server;
+    private boolean bulk = false;
+    private int workers = 1;
+    private int rateLimit = 0;
+    private OutputFormat outputFormat = OutputFormat.HUMAN;
+    private boolean mxAddresses = false;
+    private String capture = null;
+    private String zone = null;
 
     /**
      * Public constructor.
@@ -52,6 +60,90 @@ public class Options {
         return name;
     }
 
+    /**
+     * @return True if the name is an IPv4 CIDR block whose addresses are all reverse resolved.
+     */
+    public boolean isSweep() {
+        return !bulk && dns == DNSCategory.PTR && name != null && name.indexOf('/') != -1;
+    }
+
+    /**
+     * @return True if the name is a file listing one domain name per line.
+     */
+    public boolean isBulk() {
+        return bulk;
+    }
+
+    public void setBulk(boolean bulk) {
+        this.bulk = bulk;
+    }
+
+    /**
+     * @return Number of worker threads used for bulk lookups.
+     */
+    public int getWorkers() {
+        return workers;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    /**
+     * @return Ceiling on bulk queries per second sent to the server, 0 for no ceiling.
+     */
+    public int getRateLimit() {
+        return rateLimit;
+    }
+
+    public void setRateLimit(int rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    /**
+     * @return Format of the results. Only single lookups in HUMAN format print the full report.
+     */
+    public OutputFormat getOutputFormat() {
+        return outputFormat;
+    }
+
+    public void setOutputFormat(OutputFormat outputFormat) {
+        this.outputFormat = outputFormat;
+    }
+
+    /**
+     * @return True if MX lookups also resolve the addresses of the mail exchanges.
+     */
+    public boolean isMxAddresses() {
+        return mxAddresses;
+    }
+
+    public void setMxAddresses(boolean mxAddresses) {
+        this.mxAddresses = mxAddresses;
+    }
+
+    /**
+     * @return Path of the file recording every query and response, or null to record nothing.
+     */
+    public String getCapture() {
+        return capture;
+    }
+
+    public void setCapture(String capture) {
+        this.capture = capture;
+    }
+
+    /**
+     * @return Path of the hosts or zone file answered locally, or null to send every query.
+     */
+    public String getZone() {
+        return zone;
+    }
+
+    public void setZone(String zone) {
+        this.zone = zone;
+    }
+
     /**
      * Converts current Object to a String.
      * @return A String representation of the object.
@@ -63,13 +155,31 @@ public class Options {
                 output += " DNS: A";
                 break;
             case MX:
-                output += " DNS: MX";
+                output += mxAddresses ? " DNS: MX with addresses" : " DNS: MX";
                 break;
             case NS:
                 output += " DNS: NS";
                 break;
+            case PTR:
+                output += isSweep() ? " DNS: PTR sweep" : " DNS: PTR";
+                break;
+            case AAAA:
+                output += " DNS: AAAA";
+                break;
+        }
+        output += " Server: " + server + " Name: " + name + " Output: " + outputFormat;
+        if (bulk) {
+            output += " Bulk: " + workers + " workers";
+            if (rateLimit > 0) {
+                output += " at most " + rateLimit + " queries per second";
+            }
+        }
+        if (capture != null) {
+            output += " Capture: " + capture;
+        }
+        if (zone != null) {
+            output += " Zone: " + zone;
         }
-        output += " Server: " + server + " Name: " + name;
         return output;
     }
 }
@@ -1,10 +1,11 @@
 package ecse489.helper;
 
 import ecse489.helper.DNS.DNSCategory;
+import ecse489.helper.DNS.OutputFormat;
 import java.util.Arrays;
 
 public class Parser {
-    private static final int MAX_NUM_OF_ARGS = 9;
+    private static final int MAX_NUM_OF_ARGS = 20;
     private static final int MIN_NUM_OF_ARGS = 2;
 
     private String[] commands;
@@ -31,7 +32,18 @@ public class Parser {
             int port = scrapePort();
             DNSCategory dns = scrapeDNS();
             String[] arr = scrapeServerAndName();
-            options = new Options(timeout, retries, port, dns, arr[0], arr[1]);
+            Options scraped = new Options(timeout, retries, port, dns, arr[0], arr[1]);
+            scraped.setBulk(scrapeBulk());
+            scraped.setWorkers(scrapeWorkers());
+            scraped.setRateLimit(scrapeRateLimit());
+            scraped.setOutputFormat(scrapeOutputFormat());
+            scraped.setMxAddresses(scrapeMxAddresses());
+            scraped.setCapture(scrapeCapture());
+            scraped.setZone(scrapeZone());
+            if (scraped.isMxAddresses() && scraped.getOutputFormat() == OutputFormat.BINARY) {
+                throw new IllegalArgumentFormatException("-mxa only supports human, json or csv output.");
+            }
+            options = scraped;
         } catch(IllegalArgumentException e) {
             System.out.println("ERROR	Incorrect input syntax: " + e.getLocalizedMessage());
         } catch(IllegalArgumentFormatException e) {
@@ -77,16 +89,25 @@ public class Parser {
 		for (int i = 0; i < this.commands.length; i++) {
 			if (this.commands[i].charAt(0) == '-') {
 				try {
-					if (this.commands[i].length() > 3) {
-						throw new IllegalArgumentException("Only -r, -t, -p, -mx or -ns are accepted.");
+					if (this.commands[i].length() > 5) {
+						throw new IllegalArgumentException("Only -r, -t, -p, -w, -q, -o, -c, -z, -f, -mx, -mxa, -ns, -ptr or -aaaa are accepted.");
 					}
 					switch(this.commands[i]) {
 						case "-r":
 						case "-t":
 						case "-p":
+						case "-w":
+						case "-q":
+						case "-o":
+						case "-c":
+						case "-z":
+						case "-f":
 						case "-mx":
+						case "-mxa":
+						case "-ptr":
+						case "-aaaa":
 						case "-ns": break;
-						default: throw new IllegalArgumentException("Only -r, -t, -p, -mx or -ns are accepted.");
+						default: throw new IllegalArgumentException("Only -r, -t, -p, -w, -q, -o, -c, -z, -f, -mx, -mxa, -ns, -ptr or -aaaa are accepted.");
 					}
 				} catch (IndexOutOfBoundsException e) {
 					throw new IllegalArgumentException("Free floating dash '-' detected.");
@@ -152,23 +173,144 @@ public class Parser {
         return port;
     }
 
+    /**
+     * Scrapes the command line arguments for the bulk flag.
+     * @return True if the name argument is a file of domain names. Default = false
+     */
+    private boolean scrapeBulk() {
+        return Arrays.asList(this.commands).indexOf("-f") != -1;
+    }
+
+    /**
+     * Scrapes the command line arguments for the number of bulk worker threads.
+     * @return An integer representing the number of workers. Default = number of processors
+     * @throws IllegalArgumentFormatException
+     */
+    private int scrapeWorkers() throws IllegalArgumentFormatException {
+        int index = Arrays.asList(this.commands).indexOf("-w");
+        int workers = Runtime.getRuntime().availableProcessors();
+        // Found -w argument
+        if (index != -1) {
+            try {
+                workers = Integer.parseInt(this.commands[index + 1]);
+            } catch (Exception e) {
+                throw new IllegalArgumentFormatException("Excepted integer after -w.");
+            }
+            if (workers < 1) {
+                throw new IllegalArgumentFormatException("Expected at least 1 worker after -w.");
+            }
+        }
+        return workers;
+    }
+
+    /**
+     * Scrapes the command line arguments for the ceiling on bulk queries per second.
+     * @return An integer representing queries per second. Default = 0 (no ceiling)
+     * @throws IllegalArgumentFormatException
+     */
+    private int scrapeRateLimit() throws IllegalArgumentFormatException {
+        int index = Arrays.asList(this.commands).indexOf("-q");
+        int rateLimit = 0;
+        // Found -q argument
+        if (index != -1) {
+            try {
+                rateLimit = Integer.parseInt(this.commands[index + 1]);
+            } catch (Exception e) {
+                throw new IllegalArgumentFormatException("Excepted integer after -q.");
+            }
+            if (rateLimit < 0) {
+                throw new IllegalArgumentFormatException("Expected a positive rate after -q.");
+            }
+        }
+        return rateLimit;
+    }
+
+    /**
+     * Scrapes the command line arguments for the output format.
+     * @return An OutputFormat. Default = HUMAN
+     * @throws IllegalArgumentFormatException
+     */
+    private OutputFormat scrapeOutputFormat() throws IllegalArgumentFormatException {
+        int index = Arrays.asList(this.commands).indexOf("-o");
+        // Found -o argument
+        if (index != -1) {
+            String format = index + 1 < this.commands.length ? this.commands[index + 1] : "";
+            switch (format) {
+                case "human": return OutputFormat.HUMAN;
+                case "json": return OutputFormat.JSON;
+                case "csv": return OutputFormat.CSV;
+                case "bin": return OutputFormat.BINARY;
+                default: throw new IllegalArgumentFormatException("Expected human, json, csv or bin after -o.");
+            }
+        }
+        return OutputFormat.HUMAN;
+    }
+
+    /**
+     * Scrapes the command line arguments for the capture file.
+     * @return A String representing the path of the capture file. Default = null (no capture)
+     * @throws IllegalArgumentFormatException
+     */
+    private String scrapeCapture() throws IllegalArgumentFormatException {
+        int index = Arrays.asList(this.commands).indexOf("-c");
+        // Found -c argument
+        if (index != -1) {
+            if (index + 1 >= this.commands.length || this.commands[index + 1].contains("@")) {
+                throw new IllegalArgumentFormatException("Expected a file path after -c.");
+            }
+            return this.commands[index + 1];
+        }
+        return null;
+    }
+
+    /**
+     * Scrapes the command line arguments for the local zone file.
+     * @return A String representing the path of the hosts or zone file. Default = null (no local zone)
+     * @throws IllegalArgumentFormatException
+     */
+    private String scrapeZone() throws IllegalArgumentFormatException {
+        int index = Arrays.asList(this.commands).indexOf("-z");
+        // Found -z argument
+        if (index != -1) {
+            if (index + 1 >= this.commands.length || this.commands[index + 1].contains("@")) {
+                throw new IllegalArgumentFormatException("Expected a file path after -z.");
+            }
+            return this.commands[index + 1];
+        }
+        return null;
+    }
+
+    /**
+     * Scrapes the command line arguments for the combined MX and address mode.
+     * @return True if the addresses of the mail exchanges are wanted as well. Default = false
+     */
+    private boolean scrapeMxAddresses() {
+        return Arrays.asList(this.commands).indexOf("-mxa") != -1;
+    }
+
     /**
      * Scrapes the command line arguments for the type of DNS request.
      * @return An DNS enum
      */
     private DNSCategory scrapeDNS() {
-        if (Arrays.asList(this.commands).indexOf("-mx") != -1) {
+        if (Arrays.asList(this.commands).indexOf("-mx") != -1 || scrapeMxAddresses()) {
             return DNSCategory.MX;
         }
         if (Arrays.asList(this.commands).indexOf("-ns") != -1) {
             return DNSCategory.NS;
         }
+        if (Arrays.asList(this.commands).indexOf("-ptr") != -1) {
+            return DNSCategory.PTR;
+        }
+        if (Arrays.asList(this.commands).indexOf("-aaaa") != -1) {
+            return DNSCategory.AAAA;
+        }
         return DNSCategory.A;
     }
 
     /**
-     * Scrapes the command line arguments for an IPv4 address indicating the authoritative DNS server
-     * and a domain name to obtain DNS records on.
+     * Scrapes the command line arguments for the address of the DNS server, IPv4 or IPv6, or one of each
+     * separated by a comma, and a domain name to obtain DNS records on.
      * @return An array of String arr[0] -> Server IP, arr[1] -> Domain name
      * @throws IllegalArgumentFormatException
      */